@@ -0,0 +1,127 @@
+package com.littlechoc.flowlayout.benchmark;
+
+import com.littlechoc.flowlayout.FlowLayoutEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * FlowLayoutEngineBenchmark
+ * <p/>
+ * line breaking and placement as done by every measure pass of FlowLayout, from scratch or after
+ * a single item changed
+ */
+@State(Scope.Thread)
+public class FlowLayoutEngineBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  public int count;
+
+  @Param({"360", "720", "1080"})
+  public int width;
+
+  /**
+   * start, center, end, align
+   */
+  @Param({"0", "1", "2", "3"})
+  public int gravity;
+
+  private int[] mWidths;
+
+  private int[] mHeights;
+
+  private FlowLayoutEngine mEngine;
+
+  private FlowLayoutEngine mMaxLinesEngine;
+
+  private FlowLayoutEngine mAlignLinesEngine;
+
+  private FlowLayoutEngine mIncrementalEngine;
+
+  private FlowLayoutEngine mBalancedEngine;
+
+  private int mChanged;
+
+  @Setup
+  public void setUp() {
+    mWidths = Items.widths(count);
+    mHeights = Items.heights(count);
+
+    mEngine = newEngine();
+
+    mMaxLinesEngine = newEngine();
+    mMaxLinesEngine.setMaxLines(2);
+
+    // what relayoutToAlign turns on
+    mAlignLinesEngine = newEngine();
+    mAlignLinesEngine.setAlignLines(true);
+
+    mBalancedEngine = newEngine();
+    mBalancedEngine.setBreakStrategy(FlowLayoutEngine.BREAK_STRATEGY_BALANCED);
+
+    mIncrementalEngine = newEngine();
+    mIncrementalEngine.compute(mWidths, mHeights, count);
+  }
+
+  private FlowLayoutEngine newEngine() {
+    FlowLayoutEngine engine = new FlowLayoutEngine();
+    engine.setWidth(width);
+    engine.setGravity(gravity);
+    engine.setLinePadding(8);
+    return engine;
+  }
+
+  @Benchmark
+  public int compute() {
+    mEngine.invalidate();
+    mEngine.compute(mWidths, mHeights, count);
+    return mEngine.getContentHeight();
+  }
+
+  @Benchmark
+  public int computeMaxLines() {
+    mMaxLinesEngine.invalidate();
+    mMaxLinesEngine.compute(mWidths, mHeights, count);
+    return mMaxLinesEngine.getContentHeight();
+  }
+
+  @Benchmark
+  public int computeAlignLines() {
+    mAlignLinesEngine.invalidate();
+    mAlignLinesEngine.compute(mWidths, mHeights, count);
+    return mAlignLinesEngine.getContentHeight();
+  }
+
+  /**
+   * every pass breaks lines again with a balanced break strategy
+   */
+  @Benchmark
+  public int computeBalanced() {
+    mBalancedEngine.compute(mWidths, mHeights, count);
+    return mBalancedEngine.getContentHeight();
+  }
+
+  /**
+   * a counter near the end of the items grows or shrinks by a pixel
+   */
+  @Benchmark
+  public int computeTailChanged() {
+    int item = count - 1 - count / 10;
+    mChanged = mChanged == 0 ? 1 : 0;
+    mWidths[item] += mChanged == 1 ? 1 : -1;
+    mIncrementalEngine.compute(mWidths, mHeights, count);
+    return mIncrementalEngine.getContentHeight();
+  }
+
+  /**
+   * the same number of items, all of the size of the first one
+   */
+  @Benchmark
+  public int computeUniform() {
+    mEngine.computeUniform(mWidths[0], mHeights[0], count);
+    return mEngine.getContentHeight();
+  }
+}
@@ -0,0 +1,38 @@
+package com.littlechoc.flowlayout.benchmark;
+
+import java.util.Random;
+
+/**
+ * Items
+ * <p/>
+ * deterministic chip sizes shared by the benchmarks
+ */
+final class Items {
+
+  private Items() {
+  }
+
+  /**
+   * @return widths of chips between 48 and 288 pixels, as short and long tags mix
+   */
+  static int[] widths(int count) {
+    Random random = new Random(count);
+    int[] widths = new int[count];
+    for (int i = 0; i < count; i++) {
+      widths[i] = 48 + random.nextInt(240);
+    }
+    return widths;
+  }
+
+  /**
+   * @return heights of chips of 96 pixels, a few of them taller
+   */
+  static int[] heights(int count) {
+    Random random = new Random(~count);
+    int[] heights = new int[count];
+    for (int i = 0; i < count; i++) {
+      heights[i] = random.nextInt(10) == 0 ? 120 : 96;
+    }
+    return heights;
+  }
+}
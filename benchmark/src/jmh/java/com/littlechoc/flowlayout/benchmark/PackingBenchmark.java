@@ -0,0 +1,77 @@
+package com.littlechoc.flowlayout.benchmark;
+
+import com.littlechoc.flowlayout.FlowLayoutEngine;
+import com.littlechoc.flowlayout.PackingStrategy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * PackingBenchmark
+ * <p/>
+ * the packing strategies behind relayoutToCompress, alone and within a whole engine pass
+ */
+@State(Scope.Thread)
+public class PackingBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  public int count;
+
+  @Param({"360", "720", "1080"})
+  public int width;
+
+  @Param({"firstFit", "bestFit", "exact"})
+  public String strategy;
+
+  private int[] mWidths;
+
+  private int[] mHeights;
+
+  private int[] mOrder;
+
+  private PackingStrategy.Scratch mScratch;
+
+  private PackingStrategy mStrategy;
+
+  private FlowLayoutEngine mEngine;
+
+  @Setup
+  public void setUp() {
+    mWidths = Items.widths(count);
+    mHeights = Items.heights(count);
+    mOrder = new int[count];
+    mScratch = new PackingStrategy.Scratch();
+    switch (strategy) {
+      case "bestFit":
+        mStrategy = PackingStrategy.BEST_FIT_DECREASING;
+        break;
+      case "exact":
+        mStrategy = PackingStrategy.exact(1000000L);
+        break;
+      default:
+        mStrategy = PackingStrategy.FIRST_FIT_DECREASING;
+        break;
+    }
+
+    // what relayoutToCompressAndAlign turns on
+    mEngine = new FlowLayoutEngine();
+    mEngine.setWidth(width);
+    mEngine.setLinePadding(8);
+    mEngine.setPackingStrategy(mStrategy);
+    mEngine.setAlignLines(true);
+  }
+
+  @Benchmark
+  public int pack() {
+    return mStrategy.pack(mWidths, count, width, mOrder, mScratch);
+  }
+
+  @Benchmark
+  public int computeCompressedAndAligned() {
+    mEngine.compute(mWidths, mHeights, count);
+    return mEngine.getContentHeight();
+  }
+}
@@ -0,0 +1,62 @@
+package com.littlechoc.flowlayout;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.view.View.MeasureSpec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * FlowLayoutTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class FlowLayoutTest {
+
+  private static final int[] WIDTHS = {40, 120, 70, 25};
+
+  private FlowLayout mFlowLayout;
+
+  @Before
+  public void setUp() {
+    mFlowLayout = new FlowLayout(InstrumentationRegistry.getTargetContext());
+    for (int i = 0; i < WIDTHS.length; i++) {
+      View child = new View(InstrumentationRegistry.getTargetContext());
+      mFlowLayout.addView(child, new FlowLayout.LayoutParams(WIDTHS[i], 20 + i * 10));
+    }
+  }
+
+  @Test
+  public void mixedSizes_keepTheirOwnSize() {
+    layout();
+
+    for (int i = 0; i < WIDTHS.length; i++) {
+      View child = mFlowLayout.getChildAt(i);
+      assertEquals(WIDTHS[i], child.getMeasuredWidth());
+      assertEquals(20 + i * 10, child.getMeasuredHeight());
+      assertEquals(WIDTHS[i], child.getWidth());
+    }
+  }
+
+  @Test
+  public void uniformItems_takeTheSizeOfTheFirstOne() {
+    mFlowLayout.setUniformItems(true);
+    layout();
+
+    for (int i = 0; i < WIDTHS.length; i++) {
+      View child = mFlowLayout.getChildAt(i);
+      assertEquals(WIDTHS[0], child.getMeasuredWidth());
+      assertEquals(20, child.getMeasuredHeight());
+    }
+  }
+
+  private void layout() {
+    mFlowLayout.measure(MeasureSpec.makeMeasureSpec(1000, MeasureSpec.EXACTLY),
+        MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+    mFlowLayout.layout(0, 0, mFlowLayout.getMeasuredWidth(), mFlowLayout.getMeasuredHeight());
+  }
+}
@@ -0,0 +1,151 @@
+package com.littlechoc.flowlayout;
+
+/**
+ * BalancedLineBreaker
+ * <p/>
+ * Breaks items into lines in their order with the minimum raggedness: the sum over every line
+ * of the square of its free space. The last line is charged too, so a lone item is not left on
+ * it when the lines before can share their items more evenly. A line holding a single item
+ * wider than the available width costs nothing, any other line wider than it is not allowed.
+ * <p/>
+ * Writing {@code cost[j]} for the best breaking of the first j items, {@code cost[j]} is the
+ * minimum over i of {@code cost[i] + line(i, j)}, and {@code line} satisfies the quadrangle
+ * inequality as a convex function of the line width. The best i is then non decreasing in j,
+ * so the candidates are kept in a queue where each one owns the range of j it is best for, and a
+ * new candidate finds the start of its range by binary search: O(n log n) time and O(n) memory
+ * over primitive arrays which only grow.
+ */
+final class BalancedLineBreaker {
+
+  private static final long INFINITE = Long.MAX_VALUE / 4;
+
+  /**
+   * widths of the items before each index
+   */
+  private long[] mPrefix = new long[0];
+
+  /**
+   * best cost of the items before each index when a line ends there
+   */
+  private long[] mCost = new long[0];
+
+  /**
+   * start of the last line of that best breaking
+   */
+  private int[] mLineStart = new int[0];
+
+  /**
+   * queue of the candidate line starts, and of the first index each one is best for
+   */
+  private int[] mCandidate = new int[0];
+
+  private int[] mFrom = new int[0];
+
+  private int mAvailable;
+
+  /**
+   * break the items of {@code widths} into {@code lines}. When the balanced lines would be more
+   * than {@code maxLines}, the items are broken greedily so that max lines keeps as many of them
+   * as possible.
+   *
+   * @see LineTable#breakLines(int[], int[], int, int, int)
+   */
+  void breakLines(int[] widths, int[] heights, int size, int available, int maxLines,
+                  LineTable lines) {
+    if (size == 0) {
+      lines.clear();
+      return;
+    }
+    ensureCapacity(size + 1);
+    mAvailable = available;
+    mPrefix[0] = 0;
+    for (int i = 0; i < size; i++) {
+      mPrefix[i + 1] = mPrefix[i] + widths[i];
+    }
+
+    mCost[0] = 0;
+    int head = 0;
+    int tail = 0;
+    for (int j = 1; j <= size; j++) {
+      int i = j - 1;
+      // drop the candidates the new one beats on their whole range
+      while (tail > head && total(i, Math.max(mFrom[tail - 1], j))
+          <= total(mCandidate[tail - 1], Math.max(mFrom[tail - 1], j))) {
+        tail--;
+      }
+      if (tail == head) {
+        mCandidate[tail] = i;
+        mFrom[tail] = j;
+        tail++;
+      } else {
+        int last = mCandidate[tail - 1];
+        int low = Math.max(mFrom[tail - 1], j) + 1;
+        int high = size + 1;
+        while (low < high) {
+          int mid = (low + high) >>> 1;
+          if (total(i, mid) <= total(last, mid)) {
+            high = mid;
+          } else {
+            low = mid + 1;
+          }
+        }
+        if (low <= size) {
+          mCandidate[tail] = i;
+          mFrom[tail] = low;
+          tail++;
+        }
+      }
+      while (tail - head > 1 && mFrom[head + 1] <= j) {
+        head++;
+      }
+      mLineStart[j] = mCandidate[head];
+      mCost[j] = total(mCandidate[head], j);
+    }
+
+    int lastStart = mLineStart[size];
+    int lineCount = 1;
+    for (int i = lastStart; i > 0; i = mLineStart[i]) {
+      lineCount++;
+    }
+    if (maxLines > 0 && lineCount > maxLines) {
+      lines.breakLines(widths, heights, size, available, maxLines);
+      return;
+    }
+    // walk the line starts back into the queue array, then add the lines in order
+    int[] starts = mCandidate;
+    int index = lineCount;
+    starts[--index] = lastStart;
+    for (int i = lastStart; i > 0; i = mLineStart[i]) {
+      starts[--index] = mLineStart[i];
+    }
+    lines.clear();
+    for (int line = 0; line < lineCount; line++) {
+      int start = starts[line];
+      int end = line + 1 < lineCount ? starts[line + 1] : size;
+      int height = 0;
+      for (int k = start; k < end; k++) {
+        height = Math.max(height, heights[k]);
+      }
+      lines.add(start, end, (int) (mPrefix[end] - mPrefix[start]), height);
+    }
+  }
+
+  private long total(int start, int end) {
+    long width = mPrefix[end] - mPrefix[start];
+    long free = mAvailable - width;
+    if (free < 0) {
+      return end - start == 1 ? mCost[start] : INFINITE;
+    }
+    return mCost[start] + free * free;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (mCost.length < capacity) {
+      mPrefix = new long[capacity];
+      mCost = new long[capacity];
+      mLineStart = LineTable.grow(mLineStart, capacity);
+      mCandidate = LineTable.grow(mCandidate, capacity);
+      mFrom = LineTable.grow(mFrom, capacity);
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package com.littlechoc.flowlayout;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * CheckedItems
+ * <p/>
+ * The checked adapter positions of a layout in a bit set, plus the stable ids of the checked
+ * items when the adapter has them. Positions follow the item level notifications of the adapter,
+ * stable ids let a full refresh find the checked items at their new positions.
+ */
+final class CheckedItems {
+
+  /**
+   * gives the stable id of a position
+   */
+  interface IdSource {
+
+    long getItemId(int position);
+  }
+
+  private final BitSet mPositions = new BitSet();
+
+  private int mCount;
+
+  /**
+   * position of every checked stable id
+   */
+  private final HashMap<Long, Integer> mIds = new HashMap<>();
+
+  boolean isChecked(int position) {
+    return mPositions.get(position);
+  }
+
+  int count() {
+    return mCount;
+  }
+
+  /**
+   * @return the first checked position from {@code position} on, -1 if there is none
+   */
+  int next(int position) {
+    return mPositions.nextSetBit(position);
+  }
+
+  /**
+   * @param id stable id of the item, {@link FlowLayoutAdapter#NO_ID} if it has none
+   * @return true if the state of the position changed
+   */
+  boolean set(int position, boolean checked, long id) {
+    if (mPositions.get(position) == checked) {
+      return false;
+    }
+    if (checked) {
+      mPositions.set(position);
+      mCount++;
+      if (id != FlowLayoutAdapter.NO_ID) {
+        mIds.put(id, position);
+      }
+    } else {
+      mPositions.clear(position);
+      mCount--;
+      if (id != FlowLayoutAdapter.NO_ID) {
+        mIds.remove(id);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * check the positions in [0, {@code count})
+   *
+   * @param ids null if the adapter has no stable ids
+   */
+  void setAll(int count, IdSource ids) {
+    mPositions.set(0, count);
+    mCount = mPositions.cardinality();
+    if (ids != null) {
+      for (int position = 0; position < count; position++) {
+        mIds.put(ids.getItemId(position), position);
+      }
+    }
+  }
+
+  long[] ids() {
+    long[] ids = new long[mIds.size()];
+    int i = 0;
+    for (Long id : mIds.keySet()) {
+      ids[i++] = id;
+    }
+    return ids;
+  }
+
+  void clear() {
+    mPositions.clear();
+    mIds.clear();
+    mCount = 0;
+  }
+
+  /**
+   * {@code count} items were inserted at {@code start}
+   */
+  void insert(int start, int count) {
+    BitSet tail = mPositions.get(start, Math.max(start, mPositions.length()));
+    mPositions.clear(start, Math.max(start, mPositions.length()));
+    for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+      mPositions.set(start + count + i);
+    }
+    for (Map.Entry<Long, Integer> entry : mIds.entrySet()) {
+      if (entry.getValue() >= start) {
+        entry.setValue(entry.getValue() + count);
+      }
+    }
+  }
+
+  /**
+   * the items in [start, start + count) were removed
+   */
+  void remove(int start, int count) {
+    int end = start + count;
+    int length = mPositions.length();
+    if (start >= length) {
+      return;
+    }
+    mCount -= mPositions.get(start, Math.min(end, length)).cardinality();
+    BitSet tail = mPositions.get(Math.min(end, length), length);
+    mPositions.clear(start, length);
+    for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+      mPositions.set(start + i);
+    }
+    Iterator<Map.Entry<Long, Integer>> iterator = mIds.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Long, Integer> entry = iterator.next();
+      int position = entry.getValue();
+      if (position >= end) {
+        entry.setValue(position - count);
+      } else if (position >= start) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * the item at {@code from} now lives at {@code to}
+   */
+  void move(int from, int to) {
+    boolean checked = mPositions.get(from);
+    Long movedId = null;
+    if (checked) {
+      for (Map.Entry<Long, Integer> entry : mIds.entrySet()) {
+        if (entry.getValue() == from) {
+          movedId = entry.getKey();
+          break;
+        }
+      }
+    }
+    remove(from, 1);
+    insert(to, 1);
+    if (checked) {
+      set(to, true, movedId != null ? movedId : FlowLayoutAdapter.NO_ID);
+    }
+  }
+
+  /**
+   * every item may have changed: find the checked stable ids at their new positions, or only
+   * keep the positions still in the adapter when there are no stable ids
+   *
+   * @param ids null if the adapter has no stable ids
+   */
+  void refresh(int count, IdSource ids) {
+    if (mCount == 0) {
+      return;
+    }
+    if (ids == null || mIds.isEmpty()) {
+      int length = mPositions.length();
+      if (length > count) {
+        mCount -= mPositions.get(count, length).cardinality();
+        mPositions.clear(count, length);
+      }
+      mIds.clear();
+      return;
+    }
+    HashMap<Long, Integer> found = new HashMap<>();
+    mPositions.clear();
+    for (int position = 0; position < count && found.size() < mIds.size(); position++) {
+      long id = ids.getItemId(position);
+      if (mIds.containsKey(id)) {
+        found.put(id, position);
+        mPositions.set(position);
+      }
+    }
+    mIds.clear();
+    mIds.putAll(found);
+    mCount = found.size();
+  }
+}
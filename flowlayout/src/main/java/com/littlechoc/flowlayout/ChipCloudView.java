@@ -0,0 +1,387 @@
+package com.littlechoc.flowlayout;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * ChipCloudView
+ * <p/>
+ * A single view drawing plain text chips itself, broken into lines like {@link FlowLayout} does
+ * with its children: no view is created per chip. Every chip is its text surrounded by padding,
+ * drawn over the chip background drawable, or a rounded rectangle of the chip color if there is
+ * none. Text widths are cached by string for the current paint.
+ * <p/>
+ * gravity: start, center, end, align
+ * <p/>
+ * linePadding
+ * <p/>
+ * maxLines
+ */
+public class ChipCloudView extends View {
+
+  /**
+   * max cached text widths, the cache is cleared when it is full
+   */
+  private static final int MAX_CACHED_WIDTHS = 4096;
+
+  private static final int[] PRESSED_STATE = {android.R.attr.state_pressed,
+      android.R.attr.state_enabled};
+
+  private final List<String> mChips = new ArrayList<>();
+
+  private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+  private final Paint mChipPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+  private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+
+  /**
+   * text width by string, for the text size and typeface of {@link #mTextPaint}
+   */
+  private final HashMap<String, Integer> mTextWidths = new HashMap<>();
+
+  private Drawable mChipBackground;
+
+  private float mChipCornerRadius;
+
+  private int mChipPaddingHorizontal;
+
+  private int mChipPaddingVertical;
+
+  private int mChipMargin;
+
+  private final FlowLayoutEngine mEngine = new FlowLayoutEngine();
+
+  private int[] mItemWidth = new int[0];
+
+  private int[] mItemHeight = new int[0];
+
+  private int mPressedChip = -1;
+
+  private OnChipClickListener mOnChipClickListener;
+
+  private final RectF mChipRect = new RectF();
+
+  private final Rect mClipBounds = new Rect();
+
+  public ChipCloudView(Context context) {
+    this(context, null);
+  }
+
+  public ChipCloudView(Context context, AttributeSet attrs) {
+    this(context, attrs, 0);
+  }
+
+  public ChipCloudView(Context context, AttributeSet attrs, int defStyleAttr) {
+    super(context, attrs, defStyleAttr);
+    TypedArray mTypedArray = context.obtainStyledAttributes(attrs,
+        R.styleable.FlowLayout);
+    mEngine.setLinePadding(mTypedArray.getDimensionPixelSize(
+        R.styleable.FlowLayout_fl_linePadding, 0));
+    mEngine.setMaxLines(mTypedArray.getInteger(R.styleable.FlowLayout_fl_maxLines,
+        FlowLayout.UNLIMITED_LINES));
+    mEngine.setGravity(mTypedArray.getInt(R.styleable.FlowLayout_fl_gravity, FlowLayout.START));
+    mEngine.setBreakStrategy(mTypedArray.getInt(R.styleable.FlowLayout_fl_breakStrategy,
+        FlowLayout.BREAK_STRATEGY_SIMPLE));
+    mTypedArray.recycle();
+
+    mTypedArray = context.obtainStyledAttributes(attrs, R.styleable.ChipCloudView);
+    float defaultTextSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 14,
+        getResources().getDisplayMetrics());
+    mTextPaint.setTextSize(mTypedArray.getDimension(
+        R.styleable.ChipCloudView_fl_chipTextSize, defaultTextSize));
+    mTextPaint.setColor(mTypedArray.getColor(
+        R.styleable.ChipCloudView_fl_chipTextColor, 0xffffffff));
+    mChipPaint.setColor(mTypedArray.getColor(
+        R.styleable.ChipCloudView_fl_chipColor, 0xff888888));
+    mChipBackground = mTypedArray.getDrawable(R.styleable.ChipCloudView_fl_chipBackground);
+    mChipCornerRadius = mTypedArray.getDimension(
+        R.styleable.ChipCloudView_fl_chipCornerRadius, 0);
+    mChipPaddingHorizontal = mTypedArray.getDimensionPixelSize(
+        R.styleable.ChipCloudView_fl_chipPaddingHorizontal, 0);
+    mChipPaddingVertical = mTypedArray.getDimensionPixelSize(
+        R.styleable.ChipCloudView_fl_chipPaddingVertical, 0);
+    mChipMargin = mTypedArray.getDimensionPixelSize(R.styleable.ChipCloudView_fl_chipMargin, 0);
+    mTypedArray.recycle();
+  }
+
+  public List<String> getChips() {
+    return Collections.unmodifiableList(mChips);
+  }
+
+  public void setChips(Collection<? extends CharSequence> chips) {
+    mChips.clear();
+    for (CharSequence chip : chips) {
+      mChips.add(chip.toString());
+    }
+    mPressedChip = -1;
+    requestLayout();
+    invalidate();
+  }
+
+  public void setGravity(@FlowLayout.Gravity int gravity) {
+    mEngine.setGravity(gravity);
+    requestLayout();
+  }
+
+  public void setBreakStrategy(@FlowLayout.BreakStrategy int breakStrategy) {
+    mEngine.setBreakStrategy(breakStrategy);
+    requestLayout();
+  }
+
+  public void setLinePadding(int linePadding) {
+    mEngine.setLinePadding(linePadding < 0 ? 0 : linePadding);
+    requestLayout();
+  }
+
+  public void setMaxLines(int maxLines) {
+    mEngine.setMaxLines(maxLines <= 0 ? FlowLayout.UNLIMITED_LINES : maxLines);
+    requestLayout();
+  }
+
+  public void setTextSize(float px) {
+    mTextPaint.setTextSize(px);
+    mTextWidths.clear();
+    requestLayout();
+    invalidate();
+  }
+
+  public void setTypeface(Typeface typeface) {
+    mTextPaint.setTypeface(typeface);
+    mTextWidths.clear();
+    requestLayout();
+    invalidate();
+  }
+
+  public void setTextColor(int color) {
+    mTextPaint.setColor(color);
+    invalidate();
+  }
+
+  /**
+   * @param background drawn behind every chip with the pressed state for the pressed one, null to
+   *                   draw rounded rectangles of the chip color
+   */
+  public void setChipBackground(Drawable background) {
+    mChipBackground = background;
+    invalidate();
+  }
+
+  public void setChipColor(int color) {
+    mChipPaint.setColor(color);
+    invalidate();
+  }
+
+  public void setChipCornerRadius(float radius) {
+    mChipCornerRadius = radius;
+    invalidate();
+  }
+
+  public void setChipPadding(int horizontal, int vertical) {
+    mChipPaddingHorizontal = horizontal;
+    mChipPaddingVertical = vertical;
+    requestLayout();
+  }
+
+  /**
+   * @param margin space around every chip
+   */
+  public void setChipMargin(int margin) {
+    mChipMargin = margin;
+    requestLayout();
+  }
+
+  public void setOnChipClickListener(OnChipClickListener listener) {
+    mOnChipClickListener = listener;
+  }
+
+  private int getTextWidth(String text) {
+    Integer width = mTextWidths.get(text);
+    if (width == null) {
+      if (mTextWidths.size() >= MAX_CACHED_WIDTHS) {
+        mTextWidths.clear();
+      }
+      width = (int) Math.ceil(mTextPaint.measureText(text));
+      mTextWidths.put(text, width);
+    }
+    return width;
+  }
+
+  private int getChipHeight() {
+    mTextPaint.getFontMetricsInt(mFontMetrics);
+    return mFontMetrics.descent - mFontMetrics.ascent + mChipPaddingVertical * 2;
+  }
+
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+    int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+    int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+
+    int count = mChips.size();
+    if (mItemWidth.length < count) {
+      mItemWidth = LineTable.grow(mItemWidth, count);
+      mItemHeight = LineTable.grow(mItemHeight, count);
+    }
+    int outerHeight = getChipHeight() + mChipMargin * 2;
+    int margins = mChipPaddingHorizontal * 2 + mChipMargin * 2;
+    for (int i = 0; i < count; i++) {
+      mItemWidth[i] = getTextWidth(mChips.get(i)) + margins;
+      mItemHeight[i] = outerHeight;
+    }
+    mEngine.setWidth(widthSize - getPaddingLeft() - getPaddingRight());
+    mEngine.compute(mItemWidth, mItemHeight, count);
+
+    setMeasuredDimension(widthSize, heightMode == MeasureSpec.EXACTLY ? heightSize
+        : getPaddingTop() + mEngine.getContentHeight() + getPaddingBottom());
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    int lineCount = mEngine.getLineCount();
+    if (lineCount == 0) {
+      return;
+    }
+    int paddingLeft = getPaddingLeft();
+    int paddingTop = getPaddingTop();
+    mTextPaint.getFontMetricsInt(mFontMetrics);
+
+    // only the lines intersecting the clip, e.g. the visible part in a ScrollView
+    int firstLine = 0;
+    int lastLine = lineCount - 1;
+    if (canvas.getClipBounds(mClipBounds)) {
+      firstLine = mEngine.getLineAt(mClipBounds.top - paddingTop);
+      lastLine = mEngine.getLineAt(mClipBounds.bottom - paddingTop);
+    }
+    for (int line = firstLine; line <= lastLine; line++) {
+      int end = mEngine.getLineEnd(line);
+      for (int slot = mEngine.getLineStart(line); slot < end; slot++) {
+        int item = mEngine.getItem(slot);
+        int left = paddingLeft + mEngine.getSlotLeft(slot) + mChipMargin;
+        int top = paddingTop + mEngine.getSlotTop(slot) + mChipMargin;
+        int right = left + mItemWidth[item] - mChipMargin * 2;
+        int bottom = top + mItemHeight[item] - mChipMargin * 2;
+        drawChipBackground(canvas, item, left, top, right, bottom);
+        canvas.drawText(mChips.get(item), left + mChipPaddingHorizontal,
+            top + mChipPaddingVertical - mFontMetrics.ascent, mTextPaint);
+      }
+    }
+  }
+
+  private void drawChipBackground(Canvas canvas, int item, int left, int top, int right,
+                                  int bottom) {
+    if (mChipBackground == null) {
+      mChipRect.set(left, top, right, bottom);
+      canvas.drawRoundRect(mChipRect, mChipCornerRadius, mChipCornerRadius, mChipPaint);
+      return;
+    }
+    boolean pressed = item == mPressedChip;
+    if (pressed) {
+      mChipBackground.setState(PRESSED_STATE);
+    }
+    mChipBackground.setBounds(left, top, right, bottom);
+    mChipBackground.draw(canvas);
+    if (pressed) {
+      mChipBackground.setState(getDrawableState());
+    }
+  }
+
+  /**
+   * @return the index of the chip at ({@code x}, {@code y}) in view coordinates, -1 if there is
+   * none
+   */
+  public int getChipAt(float x, float y) {
+    int line = mEngine.getLineAt((int) y - getPaddingTop());
+    if (line == -1) {
+      return -1;
+    }
+    int contentX = (int) x - getPaddingLeft();
+    int contentY = (int) y - getPaddingTop();
+    int top = mEngine.getLineTop(line);
+    if (contentY < top || contentY >= top + mEngine.getLineHeight(line)) {
+      return -1;
+    }
+    // slots of a line are sorted by left, find the last one starting before x
+    int low = mEngine.getLineStart(line);
+    int high = mEngine.getLineEnd(line) - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (mEngine.getSlotLeft(mid) <= contentX) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    int item = mEngine.getItem(low);
+    int left = mEngine.getSlotLeft(low) + mChipMargin;
+    int chipTop = mEngine.getSlotTop(low) + mChipMargin;
+    if (contentX < left || contentX >= left + mItemWidth[item] - mChipMargin * 2
+        || contentY < chipTop || contentY >= chipTop + mItemHeight[item] - mChipMargin * 2) {
+      return -1;
+    }
+    return item;
+  }
+
+  @Override
+  public boolean onTouchEvent(MotionEvent event) {
+    if (!isEnabled()) {
+      return super.onTouchEvent(event);
+    }
+    switch (event.getActionMasked()) {
+      case MotionEvent.ACTION_DOWN:
+        setPressedChip(getChipAt(event.getX(), event.getY()));
+        return mPressedChip != -1 || super.onTouchEvent(event);
+      case MotionEvent.ACTION_MOVE:
+        if (mPressedChip != -1 && getChipAt(event.getX(), event.getY()) != mPressedChip) {
+          setPressedChip(-1);
+        }
+        return true;
+      case MotionEvent.ACTION_UP:
+        int chip = mPressedChip;
+        setPressedChip(-1);
+        if (chip != -1 && mOnChipClickListener != null) {
+          playSoundEffect(SoundEffectConstants.CLICK);
+          mOnChipClickListener.onChipClick(this, chip);
+        }
+        return true;
+      case MotionEvent.ACTION_CANCEL:
+        setPressedChip(-1);
+        return true;
+      default:
+        return super.onTouchEvent(event);
+    }
+  }
+
+  private void setPressedChip(int chip) {
+    if (mPressedChip != chip) {
+      mPressedChip = chip;
+      invalidate();
+    }
+  }
+
+  /**
+   * OnChipClickListener
+   */
+  public interface OnChipClickListener {
+
+    void onChipClick(ChipCloudView view, int index);
+  }
+}
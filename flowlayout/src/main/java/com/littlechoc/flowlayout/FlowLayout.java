@@ -23,18 +23,27 @@
  */
 package com.littlechoc.flowlayout;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
-import android.database.DataSetObserver;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.Trace;
 import android.support.annotation.IntDef;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Checkable;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
 
 /**
  * FlowLayout
@@ -52,33 +61,48 @@ public class FlowLayout extends ViewGroup {
   /**
    * max lines is unlimited
    */
-  public static final int UNLIMITED_LINES = 0;
+  public static final int UNLIMITED_LINES = FlowLayoutEngine.UNLIMITED_LINES;
 
   /**
    * gravity start
    */
-  public static final int START = 0;
+  public static final int START = FlowLayoutEngine.START;
 
   /**
    * gravity center
    */
-  public static final int CENTER = 1;
+  public static final int CENTER = FlowLayoutEngine.CENTER;
 
   /**
    * gravity end
    */
-  public static final int END = 2;
+  public static final int END = FlowLayoutEngine.END;
 
   /**
    * gravity justify align
    */
-  public static final int ALIGN = 3;
+  public static final int ALIGN = FlowLayoutEngine.ALIGN;
 
   @Retention(RetentionPolicy.SOURCE)
   @IntDef({START, CENTER, END, ALIGN})
   public @interface Gravity {
   }
 
+  /**
+   * fill every line before breaking to the next one
+   */
+  public static final int BREAK_STRATEGY_SIMPLE = FlowLayoutEngine.BREAK_STRATEGY_SIMPLE;
+
+  /**
+   * keep the order of the items and make the lines as even as possible
+   */
+  public static final int BREAK_STRATEGY_BALANCED = FlowLayoutEngine.BREAK_STRATEGY_BALANCED;
+
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({BREAK_STRATEGY_SIMPLE, BREAK_STRATEGY_BALANCED})
+  public @interface BreakStrategy {
+  }
+
   /**
    * support no choice
    */
@@ -99,6 +123,11 @@ public class FlowLayout extends ViewGroup {
   public @interface ChoiceMode {
   }
 
+  /**
+   * default time spent binding adapter items in a frame when populating asynchronously
+   */
+  public static final long DEFAULT_POPULATION_FRAME_BUDGET_NANOS = 4000000L;
+
   /**
    * gravity, default is start
    */
@@ -119,16 +148,115 @@ public class FlowLayout extends ViewGroup {
    */
   private int mChoiceMode;
 
-  private Context mContext;
+  /**
+   * strategy used to reorder children to use lines as few as possible, null to keep the order
+   */
+  private PackingStrategy mPackingStrategy;
+
+  /**
+   * whether every line but the last one is justified
+   */
+  private boolean mAlignLines;
+
+  /**
+   * whether only the adapter items shown within max lines are bound to views
+   */
+  private boolean mLazyInflation;
+
+  /**
+   * the adapter overflow view, attached as the last child if {@link #mOverflowShown}
+   */
+  private View mOverflowView;
+
+  private boolean mOverflowShown;
+
+  /**
+   * hidden count the overflow view was last bound to
+   */
+  private int mOverflowHiddenCount;
+
+  /**
+   * item children from this index on are left out of the lines, to make room for the overflow view
+   */
+  private int mItemLimit;
+
+  /**
+   * depth of nested batches, layout requests are held back while it is positive
+   */
+  private int mBatchDepth;
+
+  private boolean mBatchLayoutRequested;
+
+  /**
+   * whether adapter items are bound a few per frame instead of all at once
+   */
+  private boolean mAsyncPopulation;
+
+  /**
+   * whether every item has the size of the first one
+   */
+  private boolean mUniformItems;
+
+  private int mBreakStrategy;
+
+  private long mPopulationFrameBudgetNanos = DEFAULT_POPULATION_FRAME_BUDGET_NANOS;
+
+  private FrameScheduler mPopulationScheduler;
+
+  private OnPopulateListener mOnPopulateListener;
+
+  /**
+   * checked adapter positions, and their stable ids
+   */
+  private final CheckedItems mCheckedItems = new CheckedItems();
+
+  /**
+   * the stable ids of the adapter
+   */
+  private final CheckedItems.IdSource mItemIds = new CheckedItems.IdSource() {
+    @Override
+    public long getItemId(int position) {
+      return mAdapter.getItemId(position);
+    }
+  };
+
+  private OnItemCheckedChangeListener mOnItemCheckedChangeListener;
+
+  /**
+   * position touched down in a choice mode, -1 if none
+   */
+  private int mTouchPosition = -1;
+
+  private MetricsListener mMetricsListener;
+
+  /**
+   * counters of the pass being run, reused for every report, null without a metrics listener
+   */
+  private Metrics mMetrics;
+
+  /**
+   * whether the next measure pass applies a relayout method
+   */
+  private boolean mRelayoutPending;
+
+  /**
+   * restored state whose lines are taken by the first measure pass if they still match
+   */
+  private SavedState mPendingLines;
 
-  private int usefulWidth; // the space of a line we can use(line's width minus the sum of left and right padding
+  /**
+   * adapter items bound by lazy inflation before the state was saved, 0 once used
+   */
+  private int mRestoredItemLimit;
 
-  private List<View> childList = new ArrayList<>();
+  private FlowLayoutPlan mLayoutPlan;
 
-  private DataSetObserver mDataSetObserver;
+  private AdapterDataSetObserver mDataSetObserver;
 
   private FlowLayoutAdapter mAdapter;
 
+  private RecycledViewPool mRecycledViewPool;
+
   public FlowLayout(Context context) {
     this(context, null);
   }
@@ -139,7 +267,6 @@ public class FlowLayout extends ViewGroup {
 
   public FlowLayout(Context context, AttributeSet attrs, int defStyleAttr) {
     super(context, attrs, defStyleAttr);
-    mContext = context;
     TypedArray mTypedArray = context.obtainStyledAttributes(attrs,
         R.styleable.FlowLayout);
     mLinePadding = mTypedArray.getDimensionPixelSize(
@@ -147,6 +274,11 @@ public class FlowLayout extends ViewGroup {
     mMaxLines = mTypedArray.getInteger(R.styleable.FlowLayout_fl_maxLines, UNLIMITED_LINES);
     mGravity = mTypedArray.getInt(R.styleable.FlowLayout_fl_gravity, START);
     mChoiceMode = mTypedArray.getInt(R.styleable.FlowLayout_fl_choiceMode, CHOICE_MODE_NONE);
+    mLazyInflation = mTypedArray.getBoolean(R.styleable.FlowLayout_fl_lazyInflation, false);
+    mAsyncPopulation = mTypedArray.getBoolean(R.styleable.FlowLayout_fl_asyncPopulation, false);
+    mUniformItems = mTypedArray.getBoolean(R.styleable.FlowLayout_fl_uniformItems, false);
+    mBreakStrategy = mTypedArray.getInt(R.styleable.FlowLayout_fl_breakStrategy,
+        BREAK_STRATEGY_SIMPLE);
     mTypedArray.recycle();
   }
 
@@ -177,425 +309,1811 @@ public class FlowLayout extends ViewGroup {
     requestLayout();
   }
 
-  public int getChoiceMode() {
-    return mChoiceMode;
+  public int getBreakStrategy() {
+    return mBreakStrategy;
   }
 
-  public void setChoiceMode(@ChoiceMode int choiceMode) {
-    this.mChoiceMode = choiceMode;
+  /**
+   * choose how items are broken into lines. {@link #BREAK_STRATEGY_BALANCED} keeps their order
+   * and minimizes the sum of the squared free space of every line, the last one included, which
+   * avoids a nearly empty last line after sparse ones with {@link #ALIGN}. It costs O(n log n) per
+   * pass against O(n) for {@link #BREAK_STRATEGY_SIMPLE}, and falls back on it when the balanced
+   * lines would be more than max lines.
+   */
+  public void setBreakStrategy(@BreakStrategy int breakStrategy) {
+    this.mBreakStrategy = breakStrategy;
+    requestLayout();
   }
 
-  public void setAdapter(FlowLayoutAdapter adapter) {
-    if (adapter == null) {
-      throw new IllegalArgumentException("");
-    }
+  public FlowLayoutPlan getLayoutPlan() {
+    return mLayoutPlan;
+  }
 
-    // clear
-    if (mAdapter != null && mDataSetObserver != null) {
-      mAdapter.unregisterDataSetObserver(mDataSetObserver);
-    }
-    removeAllViews();
+  /**
+   * take the lines of a plan computed ahead of time instead of breaking them, in every pass where
+   * the plan matches the content width, the settings and the measured sizes of the children.
+   * Passes where it does not match break lines as usual.
+   *
+   * @param plan the plan, null to drop it
+   */
+  public void setLayoutPlan(FlowLayoutPlan plan) {
+    this.mLayoutPlan = plan;
+    requestLayout();
+  }
 
-    mAdapter = adapter;
-    mDataSetObserver = new AdapterDataSetObserver();
-    mAdapter.registerDataSetObserver(mDataSetObserver);
+  public PackingStrategy getPackingStrategy() {
+    return mPackingStrategy;
+  }
 
-    int count = mAdapter.getCount();
-    for (int i = 0; i < count; i++) {
-      addView(adapter.getView(this, i));
-    }
+  /**
+   * reorder the children in layout to use lines as few as possible, the order of the children in
+   * this view group and their adapter positions stay the same
+   *
+   * @param strategy the packing strategy, null to lay out children in their own order
+   */
+  public void setPackingStrategy(PackingStrategy strategy) {
+    this.mPackingStrategy = strategy;
+    requestLayout();
   }
 
-  private class AdapterDataSetObserver extends DataSetObserver {
-    @Override
-    public void onChanged() {
-      removeAllViews();
-      int count = mAdapter.getCount();
-      for (int i = 0; i < count; i++) {
-        addView(mAdapter.getView(FlowLayout.this, i));
-      }
-    }
+  public boolean isAlignLines() {
+    return mAlignLines;
   }
 
-  @Override
-  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-    int paddingLeft = getPaddingLeft();
-    int paddingRight = getPaddingRight();
-    int paddingTop = getPaddingTop();
-    int paddingBottom = getPaddingBottom();
+  /**
+   * justify every line but the last one, whatever the gravity is. The last line still follows
+   * the gravity.
+   */
+  public void setAlignLines(boolean alignLines) {
+    this.mAlignLines = alignLines;
+    requestLayout();
+  }
 
-    int widthSize = MeasureSpec.getSize(widthMeasureSpec);
-    int heightMode = MeasureSpec.getMode(heightMeasureSpec);
-    int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+  public boolean isLazyInflation() {
+    return mLazyInflation;
+  }
 
-    int lineUsed = paddingLeft + paddingRight;
-    int lineY = paddingTop;
-    int lineHeight = 0;
+  /**
+   * with max lines set, only bind the adapter items which fit in them, plus the overflow view of
+   * the adapter if any. The other items are bound as soon as max lines is raised or cleared.
+   * The packing strategy is ignored as long as items are inflated lazily.
+   *
+   * @see FlowLayoutAdapter#getOverflowView(ViewGroup, View, int)
+   */
+  public void setLazyInflation(boolean lazyInflation) {
+    this.mLazyInflation = lazyInflation;
+    requestLayout();
+  }
 
-    int lines = 0;
+  private boolean isInflatingLazily() {
+    return mLazyInflation && mMaxLines != UNLIMITED_LINES && mAdapter != null;
+  }
 
-    for (int i = 0; i < this.getChildCount(); i++) {
-      View child = this.getChildAt(i);
-      if (child.getVisibility() == GONE) {
-        continue;
-      }
-      int spaceWidth = 0;
-      int spaceHeight = 0;
-      LayoutParams childLp = child.getLayoutParams();
-      if (childLp instanceof MarginLayoutParams) {
-        measureChildWithMargins(child, widthMeasureSpec, 0, heightMeasureSpec, lineY);
-        MarginLayoutParams mlp = (MarginLayoutParams) childLp;
-        spaceWidth = mlp.leftMargin + mlp.rightMargin;
-        spaceHeight = mlp.topMargin + mlp.bottomMargin;
-      } else {
-        measureChild(child, widthMeasureSpec, heightMeasureSpec);
-      }
-
-      int childWidth = child.getMeasuredWidth();
-      int childHeight = child.getMeasuredHeight();
-      spaceWidth += childWidth;
-      spaceHeight += childHeight;
-
-      if (lineUsed + spaceWidth > widthSize) {
-        //approach the limit of width and move to next line
-        lineY += lineHeight;
-        lineUsed = paddingLeft + paddingRight;
-        lineHeight = 0;
-        lines++;
-        if (mMaxLines != UNLIMITED_LINES && lines >= mMaxLines) {
-          break;
-        }
-        lineY += mLinePadding;
-      }
-      if (spaceHeight > lineHeight) {
-        lineHeight = spaceHeight;
-      }
-      lineUsed += spaceWidth;
-    }
+  public boolean isUniformItems() {
+    return mUniformItems;
+  }
 
-    setMeasuredDimension(
-        widthSize,
-        heightMode == MeasureSpec.EXACTLY ? heightSize : lineY + lineHeight + paddingBottom
-    );
+  /**
+   * declare that every item has the same size, margins included, e.g. fixed size swatches. Only
+   * the first item is measured against this layout, the others are measured exactly to its size,
+   * and lines are counted instead of being broken item after item. The overflow view of lazy
+   * inflation keeps its own size.
+   */
+  public void setUniformItems(boolean uniformItems) {
+    this.mUniformItems = uniformItems;
+    requestLayout();
   }
 
-  private List<LineData> mLines = new ArrayList<>();
+  public boolean isAsyncPopulation() {
+    return mAsyncPopulation;
+  }
 
-  @Override
-  protected void onLayout(boolean changed, int l, int t, int r, int b) {
-    int paddingLeft = getPaddingLeft();
-    int paddingRight = getPaddingRight();
-    int paddingTop = getPaddingTop();
+  /**
+   * bind adapter items on the main thread a few per frame, within
+   * {@link #setPopulationFrameBudget(long)}, instead of all of them at once when the adapter is
+   * set or refreshed. Children show up progressively and the {@link OnPopulateListener} is told
+   * when every item is bound. Lazy inflation, when active, takes precedence.
+   */
+  public void setAsyncPopulation(boolean asyncPopulation) {
+    this.mAsyncPopulation = asyncPopulation;
+    requestLayout();
+  }
 
-    int width = r - l;
-    int lineWidth = 0;
-    int lineHeight = 0;
+  public long getPopulationFrameBudget() {
+    return mPopulationFrameBudgetNanos;
+  }
 
-    LineData lineData = LineData.generate();
-    mLines.clear();
-    int childCount = getChildCount();
-    for (int i = 0; i < childCount; i++) {
-      View child = getChildAt(i);
-      if (child.getVisibility() == GONE) { // do not layout if child is gone
-        continue;
-      }
-      int childWidth = child.getMeasuredWidth();
-      int childHeight = child.getMeasuredHeight();
-      MarginLayoutParams params = (MarginLayoutParams) child.getLayoutParams();
+  /**
+   * @param budgetNanos time spent binding adapter items in a frame, at least one item is bound
+   *                    every frame
+   */
+  public void setPopulationFrameBudget(long budgetNanos) {
+    this.mPopulationFrameBudgetNanos = budgetNanos;
+  }
 
-      if (lineWidth + childWidth + params.rightMargin + params.leftMargin > width - paddingLeft - paddingRight) { // the rest space can not store this child
-        lineData.lineWidth = lineWidth;
-        lineData.lineHeight = lineHeight;
-        mLines.add(lineData);
-
-        // reset
-        lineWidth = 0;
-        lineHeight = 0;
-        lineData = LineData.generate();
-      }
-      lineWidth += childWidth + params.rightMargin + params.leftMargin;
-      lineHeight = Math.max(lineHeight, childHeight + params.bottomMargin + params.topMargin);
-      lineData.lineChild.add(child);
-    }
-    // add last line
-    lineData.lineWidth = lineWidth;
-    lineData.lineHeight = lineHeight;
-    mLines.add(lineData);
-
-    usefulWidth = width - paddingLeft - paddingRight;
-    // begin layout
-    int lines = mLines.size();
-    int showLines = mMaxLines == UNLIMITED_LINES ? lines : Math.min(mMaxLines, lines);
-
-    int left;
-    int top = paddingTop;
-
-    for (int i = 0; i < showLines; i++) {
-      lineData = mLines.get(i);
-      int space = 0;
-      switch (mGravity) { // left position
-        case START:
-          left = paddingLeft;
-          break;
-        case CENTER:
-          left = paddingLeft + (width - lineData.lineWidth) / 2;
-          break;
-        case END:
-          left = width - paddingRight - lineData.lineWidth;
-          break;
-        case ALIGN:
-          left = paddingLeft;
-          int count = lineData.lineChild.size();
-          space = count == 1 ? 0 : (width - lineData.lineWidth) / (count - 1);
-          break;
-        default:
-          left = paddingLeft;
-          break;
-      }
-
-      for (int j = 0; j < lineData.lineChild.size(); j++) {
-        View child = lineData.lineChild.get(j);
-        if (child.getVisibility() == GONE) {
-          continue;
-        }
-        MarginLayoutParams params = (MarginLayoutParams) child.getLayoutParams();
-        int ll = left + params.leftMargin;
-        int tt = top + params.topMargin;
-        int bb = tt + child.getMeasuredHeight();
-        int rr = ll + child.getMeasuredWidth();
-        child.layout(ll, tt, rr, bb);
-        left += child.getMeasuredWidth() + params.leftMargin + params.rightMargin;
-        if (mGravity == ALIGN) {
-          left += space;
-        }
-      }
-      top += lineData.lineHeight + mLinePadding;
-    }
+  public void setOnPopulateListener(OnPopulateListener listener) {
+    this.mOnPopulateListener = listener;
   }
 
   /**
-   * resort child elements to use lines as few as possible
+   * report every measure, layout and population pass with its duration and what it did, null to
+   * stop. Without a listener the passes only pay a null check.
    */
-  public void relayoutToCompress() {
-    int childCount = this.getChildCount();
-    if (0 == childCount) {
-      //no need to sort if flowlayout has no child view
-      return;
-    }
-    int count = 0;
-    for (int i = 0; i < childCount; i++) {
-      View v = getChildAt(i);
-      if (v instanceof BlankView) {
-        //BlankView is just to make childs look in alignment, we should ignore them when we relayout
-        continue;
-      }
-      count++;
-    }
-    View[] childs = new View[count];
-    int[] spaces = new int[count];
-    int n = 0;
-    for (int i = 0; i < childCount; i++) {
-      View v = getChildAt(i);
-      if (v instanceof BlankView) {
-        //BlankView is just to make childs look in alignment, we should ignore them when we relayout
-        continue;
-      }
-      childs[n] = v;
-      LayoutParams childLp = v.getLayoutParams();
-      int childWidth = v.getMeasuredWidth();
-      if (childLp instanceof MarginLayoutParams) {
-        MarginLayoutParams mlp = (MarginLayoutParams) childLp;
-        spaces[n] = mlp.leftMargin + childWidth + mlp.rightMargin;
-      } else {
-        spaces[n] = childWidth;
-      }
-      n++;
+  public void setMetricsListener(MetricsListener listener) {
+    this.mMetricsListener = listener;
+    if (listener == null) {
+      mMetrics = null;
+    } else if (mMetrics == null) {
+      mMetrics = new Metrics();
     }
-    int[] compressSpaces = new int[count];
-    for (int i = 0; i < count; i++) {
-      compressSpaces[i] = spaces[i] > usefulWidth ? usefulWidth : spaces[i];
-    }
-    sortToCompress(childs, compressSpaces);
-    this.removeAllViews();
-    for (View v : childList) {
-      this.addView(v);
-    }
-    childList.clear();
   }
 
-  private void sortToCompress(View[] childs, int[] spaces) {
-    int childCount = childs.length;
-    int[][] table = new int[childCount + 1][usefulWidth + 1];
-    for (int i = 0; i < childCount + 1; i++) {
-      for (int j = 0; j < usefulWidth; j++) {
-        table[i][j] = 0;
-      }
-    }
-    boolean[] flag = new boolean[childCount];
-    for (int i = 0; i < childCount; i++) {
-      flag[i] = false;
-    }
-    for (int i = 1; i <= childCount; i++) {
-      for (int j = spaces[i - 1]; j <= usefulWidth; j++) {
-        table[i][j] = (table[i - 1][j] > table[i - 1][j - spaces[i - 1]] + spaces[i - 1]) ? table[i - 1][j] : table[i - 1][j - spaces[i - 1]] + spaces[i - 1];
-      }
-    }
-    int v = usefulWidth;
-    for (int i = childCount; i > 0 && v >= spaces[i - 1]; i--) {
-      if (table[i][v] == table[i - 1][v - spaces[i - 1]] + spaces[i - 1]) {
-        flag[i - 1] = true;
-        v = v - spaces[i - 1];
-      }
+  /**
+   * open the trace section of a pass
+   *
+   * @return the start time of the pass, 0 without a metrics listener
+   */
+  private long beginPass(String section) {
+    beginTraceSection(section);
+    return mMetrics != null ? System.nanoTime() : 0;
+  }
+
+  private void endPass(int pass, long startNanos) {
+    endTraceSection();
+    Metrics metrics = mMetrics;
+    if (metrics != null) {
+      metrics.mPass = pass;
+      metrics.mDurationNanos = System.nanoTime() - startNanos;
+      mMetricsListener.onPass(this, metrics);
+      metrics.reset();
     }
-    int rest = childCount;
-    View[] restArray;
-    int[] restSpaces;
-    for (int i = 0; i < flag.length; i++) {
-      if (flag[i]) {
-        childList.add(childs[i]);
-        rest--;
-      }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+  private static void beginTraceSection(String section) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+      Trace.beginSection(section);
     }
+  }
 
-    if (0 == rest) {
-      return;
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+  private static void endTraceSection() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+      Trace.endSection();
     }
-    restArray = new View[rest];
-    restSpaces = new int[rest];
-    int index = 0;
-    for (int i = 0; i < flag.length; i++) {
-      if (!flag[i]) {
-        restArray[index] = childs[i];
-        restSpaces[index] = spaces[i];
-        index++;
-      }
+  }
+
+  /**
+   * @return true while adapter items are waiting to be bound by the asynchronous population
+   */
+  public boolean isPopulating() {
+    return mPopulationScheduler != null && mPopulationScheduler.isScheduled();
+  }
+
+  private boolean isPopulatingAsync() {
+    return mAsyncPopulation && mAdapter != null && !isInflatingLazily();
+  }
+
+  /**
+   * @return true if not every adapter item has to be bound right away
+   */
+  private boolean isBindingPartially() {
+    return isInflatingLazily() || isPopulatingAsync();
+  }
+
+  private void schedulePopulation() {
+    if (mPopulationScheduler == null) {
+      mPopulationScheduler = FrameScheduler.create(new Runnable() {
+        @Override
+        public void run() {
+          populate();
+        }
+      });
     }
-    table = null;
-    childs = null;
-    flag = null;
-    sortToCompress(restArray, restSpaces);
+    mPopulationScheduler.schedule();
   }
 
   /**
-   * add some blank view to make child elements look in alignment
+   * bind the next adapter items until the frame budget is spent
    */
-  public void relayoutToAlign() {
-    int childCount = this.getChildCount();
-    if (0 == childCount) {
-      //no need to sort if flowlayout has no child view
+  private void populate() {
+    if (!isPopulatingAsync()) {
       return;
     }
-    int count = 0;
-    for (int i = 0; i < childCount; i++) {
-      View v = getChildAt(i);
-      if (v instanceof BlankView) {
-        //BlankView is just to make childs look in alignment, we should ignore them when we relayout
-        continue;
-      }
-      count++;
+    int count = mAdapter.getCount();
+    int position = getItemChildCount();
+    if (position < count) {
+      long start = beginPass("FlowLayout populate");
+      long deadline = System.nanoTime() + mPopulationFrameBudgetNanos;
+      beginBatch();
+      do {
+        addAdapterView(position++);
+      } while (position < count && System.nanoTime() < deadline);
+      endBatch();
+      endPass(Metrics.PASS_POPULATE, start);
     }
-    View[] childs = new View[count];
-    int[] spaces = new int[count];
-    int n = 0;
-    for (int i = 0; i < childCount; i++) {
-      View v = getChildAt(i);
-      if (v instanceof BlankView) {
-        //BlankView is just to make childs look in alignment, we should ignore them when we relayout
-        continue;
-      }
-      childs[n] = v;
-      LayoutParams childLp = v.getLayoutParams();
-      int childWidth = v.getMeasuredWidth();
-      if (childLp instanceof MarginLayoutParams) {
-        MarginLayoutParams mlp = (MarginLayoutParams) childLp;
-        spaces[n] = mlp.leftMargin + childWidth + mlp.rightMargin;
-      } else {
-        spaces[n] = childWidth;
-      }
-      n++;
+    if (position < count) {
+      schedulePopulation();
+    } else if (mOnPopulateListener != null) {
+      mOnPopulateListener.onPopulated(this);
     }
-    int lineTotal = 0;
-    int start = 0;
-    this.removeAllViews();
-    for (int i = 0; i < count; i++) {
-      if (lineTotal + spaces[i] > usefulWidth) {
-        int blankWidth = usefulWidth - lineTotal;
-        int end = i - 1;
-        int blankCount = end - start;
-        if (blankCount >= 0) {
-          if (blankCount > 0) {
-            int eachBlankWidth = blankWidth / blankCount;
-            MarginLayoutParams lp = new MarginLayoutParams(eachBlankWidth, 0);
-            for (int j = start; j < end; j++) {
-              this.addView(childs[j]);
-              BlankView blank = new BlankView(mContext);
-              this.addView(blank, lp);
-            }
-          }
-          this.addView(childs[end]);
-          start = i;
-          i--;
-          lineTotal = 0;
-        } else {
-          this.addView(childs[i]);
-          start = i + 1;
-          lineTotal = 0;
-        }
-      } else {
-        lineTotal += spaces[i];
-      }
+  }
+
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    if (isPopulatingAsync() && getItemChildCount() < mAdapter.getCount()) {
+      schedulePopulation();
     }
-    for (int i = start; i < count; i++) {
-      this.addView(childs[i]);
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    if (mPopulationScheduler != null) {
+      mPopulationScheduler.cancel();
     }
+    super.onDetachedFromWindow();
   }
 
   /**
-   * use both of relayout methods together
+   * @return the number of children bound to adapter items, the overflow view excluded
    */
-  public void relayoutToCompressAndAlign() {
-    this.relayoutToCompress();
-    this.relayoutToAlign();
+  private int getItemChildCount() {
+    return mOverflowShown ? getChildCount() - 1 : getChildCount();
+  }
+
+  public int getChoiceMode() {
+    return mChoiceMode;
   }
 
   /**
-   * LineData store line height, line width and the child in this line
+   * set the choice mode, which clears the checked items. Items are checked by tapping them, or
+   * with {@link #performItemClick(int)} from the click listener of a clickable item view, and
+   * the view of a checked item is checked if it is {@link Checkable}, selected otherwise.
    */
-  private static class LineData {
-    int lineHeight;
-    int lineWidth;
-    List<View> lineChild;
-
-    public LineData() {
-      this.lineHeight = 0;
-      this.lineWidth = 0;
-      this.lineChild = new ArrayList<>();
+  public void setChoiceMode(@ChoiceMode int choiceMode) {
+    if (mChoiceMode != choiceMode) {
+      clearChoices();
+      this.mChoiceMode = choiceMode;
     }
+  }
+
+  public void setOnItemCheckedChangeListener(OnItemCheckedChangeListener listener) {
+    this.mOnItemCheckedChangeListener = listener;
+  }
 
-    static LineData generate() {
-      return new LineData();
+  public boolean isItemChecked(int position) {
+    return mCheckedItems.isChecked(position);
+  }
+
+  /**
+   * check or uncheck an item, checking an item unchecks the other one in single choice mode.
+   * Ignored without choice mode.
+   */
+  public void setItemChecked(int position, boolean checked) {
+    if (mChoiceMode == CHOICE_MODE_NONE) {
+      return;
+    }
+    if (checked && mChoiceMode == CHOICE_MODE_SINGLE) {
+      int current = mCheckedItems.next(0);
+      if (current != -1 && current != position) {
+        updateItemChecked(current, false);
+      }
     }
+    updateItemChecked(position, checked);
   }
 
-  @Override
-  protected LayoutParams generateLayoutParams(LayoutParams p) {
-    return new MarginLayoutParams(p);
+  public void toggleItemChecked(int position) {
+    setItemChecked(position, !mCheckedItems.isChecked(position));
   }
 
-  @Override
-  public LayoutParams generateLayoutParams(AttributeSet attrs) {
-    return new MarginLayoutParams(getContext(), attrs);
+  /**
+   * @return the checked position in single choice mode, the first one in multi choice mode, -1
+   * if none is checked
+   */
+  public int getCheckedItemPosition() {
+    return mCheckedItems.next(0);
   }
 
-  @Override
-  protected LayoutParams generateDefaultLayoutParams() {
-    return new MarginLayoutParams(super.generateDefaultLayoutParams());
+  public int getCheckedItemCount() {
+    return mCheckedItems.count();
   }
 
-  class BlankView extends View {
+  /**
+   * @return the checked positions in increasing order
+   */
+  public int[] getCheckedItemPositions() {
+    int[] positions = new int[mCheckedItems.count()];
+    int i = 0;
+    for (int p = mCheckedItems.next(0); p != -1; p = mCheckedItems.next(p + 1)) {
+      positions[i++] = p;
+    }
+    return positions;
+  }
+
+  /**
+   * @return the stable ids of the checked items, empty if the adapter has no stable ids
+   */
+  public long[] getCheckedItemIds() {
+    return mCheckedItems.ids();
+  }
+
+  /**
+   * uncheck every checked item, the listener hears about each of them
+   */
+  public void clearChoices() {
+    int[] positions = getCheckedItemPositions();
+    for (int position : positions) {
+      updateItemChecked(position, false);
+    }
+  }
+
+  /**
+   * check every item at once, in multi choice mode only. The listener hears about it once,
+   * through {@link OnItemCheckedChangeListener#onAllItemsChecked(FlowLayout, int)}.
+   */
+  public void checkAll() {
+    if (mChoiceMode != CHOICE_MODE_MULTI) {
+      return;
+    }
+    int count = mAdapter != null ? mAdapter.getCount() : getItemChildCount();
+    if (mCheckedItems.count() == count) {
+      return;
+    }
+    mCheckedItems.setAll(count, mAdapter != null && mAdapter.hasStableIds() ? mItemIds : null);
+    for (int i = 0; i < getItemChildCount(); i++) {
+      setChildChecked(getChildAt(i), true);
+    }
+    if (mOnItemCheckedChangeListener != null) {
+      mOnItemCheckedChangeListener.onAllItemsChecked(this, count);
+    }
+  }
+
+  /**
+   * what a tap on an item does in a choice mode: check it in single choice mode, toggle it in
+   * multi choice mode
+   *
+   * @return true if the choice mode handled the click
+   */
+  public boolean performItemClick(int position) {
+    if (mChoiceMode == CHOICE_MODE_NONE) {
+      return false;
+    }
+    if (mChoiceMode == CHOICE_MODE_SINGLE) {
+      setItemChecked(position, true);
+    } else {
+      toggleItemChecked(position);
+    }
+    playSoundEffect(SoundEffectConstants.CLICK);
+    return true;
+  }
+
+  private void updateItemChecked(int position, boolean checked) {
+    long id = mAdapter != null && mAdapter.hasStableIds()
+        ? mAdapter.getItemId(position) : FlowLayoutAdapter.NO_ID;
+    if (!mCheckedItems.set(position, checked, id)) {
+      return;
+    }
+    if (position < getItemChildCount()) {
+      setChildChecked(getChildAt(position), checked);
+    }
+    if (mOnItemCheckedChangeListener != null) {
+      mOnItemCheckedChangeListener.onItemCheckedChanged(this, position, checked);
+    }
+  }
+
+  private static void setChildChecked(View child, boolean checked) {
+    if (child instanceof Checkable) {
+      ((Checkable) child).setChecked(checked);
+    } else {
+      child.setSelected(checked);
+    }
+  }
+
+  /**
+   * @return the number of lines of the last layout pass, the overflow view included
+   */
+  public int getLineCount() {
+    return mLinesValid ? mEngine.getLineCount() : 0;
+  }
+
+  /**
+   * @return the line {@code position} was laid out on by the last layout pass, -1 if the item is
+   * gone, not bound or dropped by max lines, or if a layout pass is pending
+   */
+  public int getLineForPosition(int position) {
+    int item = findItem(position);
+    return item == -1 ? -1 : mEngine.getLineOfSlot(mEngine.getSlotOfItem(item));
+  }
+
+  /**
+   * @param x horizontal coordinate in this view
+   * @param y vertical coordinate in this view
+   * @return the position of the item whose view is under ({@code x}, {@code y}), -1 if there is
+   * none or if a layout pass is pending
+   */
+  public int getPositionAt(int x, int y) {
+    if (!mLinesValid) {
+      return -1;
+    }
+    int slot = mEngine.getSlotAt(x - getPaddingLeft(), y - getPaddingTop());
+    if (slot == -1 || slot >= mEngine.getShownCount()) {
+      return -1;
+    }
+    int position = mItemChild[mEngine.getItem(slot)];
+    if (position >= getItemChildCount()) {
+      // the overflow view
+      return -1;
+    }
+    // the engine box includes the margins
+    View child = getChildAt(position);
+    if (x < child.getLeft() || x >= child.getRight()
+        || y < child.getTop() || y >= child.getBottom()) {
+      return -1;
+    }
+    return position;
+  }
+
+  /**
+   * find the items on the lines crossing the vertical span of {@code viewport}, e.g. the visible
+   * rect of a scrolling parent mapped to this view
+   *
+   * @param viewport rect in this view, only its top and bottom are used
+   * @param outRange receives the first and the last positions on those lines, both included.
+   *                 With a packing strategy some positions in between can be on other lines.
+   * @return false if no item crosses the viewport or if a layout pass is pending
+   */
+  public boolean getVisibleRange(Rect viewport, int[] outRange) {
+    int lineCount = getLineCount();
+    int top = viewport.top - getPaddingTop();
+    int bottom = viewport.bottom - getPaddingTop();
+    if (lineCount == 0 || bottom <= 0 || top >= mEngine.getContentHeight()) {
+      return false;
+    }
+    int startSlot = mEngine.getLineStart(mEngine.getLineAt(top));
+    int endSlot = mEngine.getLineEnd(mEngine.getLineAt(bottom - 1));
+    int itemChildCount = getItemChildCount();
+    int first = Integer.MAX_VALUE;
+    int last = -1;
+    if (mEngine.getPackingStrategy() == null) {
+      // slots follow the positions, the overflow view can only be the last slot
+      if (mItemChild[mEngine.getItem(endSlot - 1)] >= itemChildCount) {
+        endSlot--;
+      }
+      if (startSlot < endSlot) {
+        first = mItemChild[mEngine.getItem(startSlot)];
+        last = mItemChild[mEngine.getItem(endSlot - 1)];
+      }
+    } else {
+      for (int slot = startSlot; slot < endSlot; slot++) {
+        int position = mItemChild[mEngine.getItem(slot)];
+        if (position < itemChildCount) {
+          first = Math.min(first, position);
+          last = Math.max(last, position);
+        }
+      }
+    }
+    if (last == -1) {
+      return false;
+    }
+    outRange[0] = first;
+    outRange[1] = last;
+    return true;
+  }
+
+  /**
+   * @return the number of items dropped by max lines, adapter items left unbound by lazy
+   * inflation included
+   */
+  public int getHiddenItemCount() {
+    if (!mLinesValid) {
+      return 0;
+    }
+    int items = mItemCount;
+    int shown = mEngine.getShownCount();
+    if (items > 0 && mItemChild[items - 1] >= getItemChildCount()) {
+      // the overflow view is the last item
+      items--;
+      shown = Math.min(shown, items);
+    }
+    int total = mAdapter != null && !isPopulatingAsync() ? mAdapter.getCount()
+        : getItemChildCount();
+    return total - mItemLimit + items - shown;
+  }
+
+  /**
+   * @return the engine item of the child at {@code position}, -1 if it is not an item
+   */
+  private int findItem(int position) {
+    if (!mLinesValid || position < 0 || position >= getItemChildCount()) {
+      return -1;
+    }
+    // items are added in the order of the children
+    int low = 0;
+    int high = mItemCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (mItemChild[mid] < position) {
+        low = mid + 1;
+      } else if (mItemChild[mid] > position) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean onTouchEvent(MotionEvent event) {
+    if (mChoiceMode == CHOICE_MODE_NONE || !isEnabled()) {
+      return super.onTouchEvent(event);
+    }
+    int x = (int) event.getX();
+    int y = (int) event.getY();
+    switch (event.getActionMasked()) {
+      case MotionEvent.ACTION_DOWN:
+        mTouchPosition = getPositionAt(x, y);
+        return mTouchPosition != -1 || super.onTouchEvent(event);
+      case MotionEvent.ACTION_UP:
+        if (mTouchPosition != -1 && mTouchPosition == getPositionAt(x, y)
+            && mTouchPosition < getItemChildCount()) {
+          performItemClick(mTouchPosition);
+        }
+        mTouchPosition = -1;
+        return true;
+      case MotionEvent.ACTION_CANCEL:
+        mTouchPosition = -1;
+        return true;
+      default:
+        return mTouchPosition != -1 || super.onTouchEvent(event);
+    }
+  }
+
+  public void setAdapter(FlowLayoutAdapter adapter) {
+    if (adapter == null) {
+      throw new IllegalArgumentException("");
+    }
+
+    // clear, the views of the old adapter are not recycled as their view types mean nothing to
+    // the new one
+    if (mAdapter != null && mDataSetObserver != null) {
+      mAdapter.unregisterDataSetObserver(mDataSetObserver);
+      mDataSetObserver.onBatchEnd();
+    }
+    removeAllViews();
+    mOverflowView = null;
+    mOverflowShown = false;
+    mCheckedItems.clear();
+
+    mAdapter = adapter;
+    mDataSetObserver = new AdapterDataSetObserver();
+    mAdapter.registerDataSetObserver(mDataSetObserver);
+
+    if (isInflatingLazily()) {
+      // bound in the measure pass, as far as they fit
+      requestLayout();
+      return;
+    }
+    if (isPopulatingAsync()) {
+      schedulePopulation();
+      return;
+    }
+    long start = beginPass("FlowLayout populate");
+    beginBatch();
+    int count = mAdapter.getCount();
+    for (int i = 0; i < count; i++) {
+      addAdapterView(i);
+    }
+    endBatch();
+    endPass(Metrics.PASS_POPULATE, start);
+  }
+
+  public FlowLayoutAdapter getAdapter() {
+    return mAdapter;
+  }
+
+  /**
+   * share a pool of recycled views with other FlowLayouts, e.g. tag rows inside a list. All
+   * layouts sharing a pool must use adapters with compatible view types.
+   */
+  public void setRecycledViewPool(RecycledViewPool pool) {
+    mRecycledViewPool = pool;
+  }
+
+  public RecycledViewPool getRecycledViewPool() {
+    if (mRecycledViewPool == null) {
+      mRecycledViewPool = new RecycledViewPool();
+    }
+    return mRecycledViewPool;
+  }
+
+  /**
+   * get a view for {@code position} from the adapter, reusing a recycled view of the same type
+   */
+  private View obtainView(int position) {
+    int viewType = mAdapter.getItemViewType(position);
+    View convertView = getRecycledViewPool().getRecycledView(viewType);
+    View child = mAdapter.getView(this, convertView, position);
+    if (convertView != null && child != convertView) {
+      getRecycledViewPool().putRecycledView(viewType, convertView);
+    }
+    if (mMetrics != null) {
+      mMetrics.mBoundViews++;
+      if (child != convertView) {
+        mMetrics.mCreatedViews++;
+      }
+    }
+    bindLayoutParams(obtainLayoutParams(child), position, viewType);
+    if (mChoiceMode != CHOICE_MODE_NONE) {
+      setChildChecked(child, mCheckedItems.isChecked(position));
+    }
+    return child;
+  }
+
+  /**
+   * remember what the child is bound to, its cached measure is only kept if it is still bound to
+   * the same stable id
+   */
+  private void bindLayoutParams(LayoutParams params, int position, int viewType) {
+    long itemId = mAdapter.hasStableIds() ? mAdapter.getItemId(position) : FlowLayoutAdapter.NO_ID;
+    if (itemId == FlowLayoutAdapter.NO_ID || itemId != params.mItemId) {
+      params.invalidateMeasure();
+    }
+    params.mViewType = viewType;
+    params.mItemId = itemId;
+  }
+
+  private LayoutParams obtainLayoutParams(View child) {
+    ViewGroup.LayoutParams p = child.getLayoutParams();
+    LayoutParams params;
+    if (p == null) {
+      params = (LayoutParams) generateDefaultLayoutParams();
+    } else if (!checkLayoutParams(p)) {
+      params = (LayoutParams) generateLayoutParams(p);
+    } else {
+      return (LayoutParams) p;
+    }
+    child.setLayoutParams(params);
+    return params;
+  }
+
+  private void addAdapterView(int position) {
+    addView(obtainView(position), position);
+  }
+
+  /**
+   * rebind the child at {@code position}, keeping the view if the adapter reuses it
+   */
+  private void rebindAdapterView(int position) {
+    View child = getChildAt(position);
+    int viewType = mAdapter.getItemViewType(position);
+    if (((LayoutParams) child.getLayoutParams()).mViewType == viewType) {
+      View bound = mAdapter.getView(this, child, position);
+      if (mMetrics != null) {
+        mMetrics.mBoundViews++;
+        if (bound != child) {
+          mMetrics.mCreatedViews++;
+        }
+      }
+      bindLayoutParams(obtainLayoutParams(bound), position, viewType);
+      if (mChoiceMode != CHOICE_MODE_NONE) {
+        setChildChecked(bound, mCheckedItems.isChecked(position));
+      }
+      if (bound == child) {
+        return;
+      }
+      removeViewAt(position);
+      getRecycledViewPool().putRecycledView(viewType, child);
+      if (mMetrics != null) {
+        mMetrics.mRecycledViews++;
+      }
+      addView(bound, position);
+    } else {
+      removeViewAt(position);
+      recycleView(child);
+      addAdapterView(position);
+    }
+  }
+
+  /**
+   * bind positions [0, {@code target}) to the item children bound to their stable id, which keep
+   * their view, cached measure and state. Only the ids without a child get a view from the pool
+   * or the adapter, children whose id is gone are recycled.
+   *
+   * @param bound the number of item children before the change
+   */
+  private void rebindByStableIds(int target, int bound) {
+    View[] children = new View[bound];
+    HashMap<Long, View> childrenById = new HashMap<>();
+    for (int i = 0; i < bound; i++) {
+      View child = getChildAt(i);
+      children[i] = child;
+      long itemId = ((LayoutParams) child.getLayoutParams()).mItemId;
+      if (itemId != FlowLayoutAdapter.NO_ID && !childrenById.containsKey(itemId)) {
+        childrenById.put(itemId, child);
+      }
+    }
+    detachViewsFromParent(0, bound);
+    for (int position = 0; position < target; position++) {
+      View child = childrenById.remove(mAdapter.getItemId(position));
+      int viewType = mAdapter.getItemViewType(position);
+      if (child == null || ((LayoutParams) child.getLayoutParams()).mViewType != viewType) {
+        addView(obtainView(position), position);
+        continue;
+      }
+      View view = mAdapter.getView(this, child, position);
+      if (mMetrics != null) {
+        mMetrics.mBoundViews++;
+      }
+      bindLayoutParams(obtainLayoutParams(view), position, viewType);
+      if (mChoiceMode != CHOICE_MODE_NONE) {
+        setChildChecked(view, mCheckedItems.isChecked(position));
+      }
+      if (view == child) {
+        attachViewToParent(child, position, child.getLayoutParams());
+      } else {
+        if (mMetrics != null) {
+          mMetrics.mCreatedViews++;
+        }
+        addView(view, position);
+      }
+    }
+    for (View child : children) {
+      if (child.getParent() == null) {
+        removeDetachedView(child, false);
+        recycleView(child);
+      }
+    }
+  }
+
+  private void recycleView(View child) {
+    int viewType = ((LayoutParams) child.getLayoutParams()).mViewType;
+    if (viewType != LayoutParams.INVALID_VIEW_TYPE) {
+      if (mMetrics != null) {
+        mMetrics.mRecycledViews++;
+      }
+      if (mChoiceMode != CHOICE_MODE_NONE) {
+        setChildChecked(child, false);
+      }
+      getRecycledViewPool().putRecycledView(viewType, child);
+    }
+  }
+
+  /**
+   * keeps the children bound to adapter positions [0, bound item count), which is every position
+   * unless items are inflated lazily
+   */
+  private class AdapterDataSetObserver extends FlowLayoutAdapter.AdapterDataObserver {
+
+    @Override
+    public void onChanged() {
+      int count = mAdapter.getCount();
+      // before rebinding, so that the views get the state of their new items
+      mCheckedItems.refresh(count, mAdapter.hasStableIds() ? mItemIds : null);
+      int bound = getItemChildCount();
+      int target = isBindingPartially() ? Math.min(count, bound) : count;
+      mOverflowHiddenCount = -1;
+      long start = beginPass("FlowLayout populate");
+      beginBatch();
+      if (mAdapter.hasStableIds()) {
+        rebindByStableIds(target, bound);
+      } else {
+        // rebind the children we already have and only add or remove the difference
+        for (int i = 0; i < Math.min(target, bound); i++) {
+          rebindAdapterView(i);
+        }
+        removeItemChildren(target, bound);
+        for (int i = bound; i < target; i++) {
+          addAdapterView(i);
+        }
+      }
+      requestLayout();
+      endBatch();
+      endPass(Metrics.PASS_POPULATE, start);
+      if (isPopulatingAsync() && target < count) {
+        schedulePopulation();
+      }
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+      int end = Math.min(positionStart + itemCount, getItemChildCount());
+      beginBatch();
+      for (int i = positionStart; i < end; i++) {
+        rebindAdapterView(i);
+      }
+      endBatch();
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+      mCheckedItems.insert(positionStart, itemCount);
+      if (isBindingPartially() && positionStart >= getItemChildCount()) {
+        // after the bound items, only the hidden count changes or they are bound later
+        requestLayout();
+        if (isPopulatingAsync()) {
+          schedulePopulation();
+        }
+        return;
+      }
+      beginBatch();
+      for (int i = positionStart; i < positionStart + itemCount; i++) {
+        addAdapterView(i);
+      }
+      endBatch();
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+      mCheckedItems.remove(positionStart, itemCount);
+      int bound = getItemChildCount();
+      beginBatch();
+      removeItemChildren(Math.min(positionStart, bound),
+          Math.min(positionStart + itemCount, bound));
+      requestLayout();
+      endBatch();
+    }
+
+    @Override
+    public void onItemMoved(int fromPosition, int toPosition) {
+      mCheckedItems.move(fromPosition, toPosition);
+      int bound = getItemChildCount();
+      beginBatch();
+      if (fromPosition < bound && toPosition < bound) {
+        View child = getChildAt(fromPosition);
+        removeViewAt(fromPosition);
+        addView(child, toPosition);
+      } else if (fromPosition < bound) {
+        removeItemChildren(fromPosition, fromPosition + 1);
+      } else if (toPosition < bound) {
+        addAdapterView(toPosition);
+      }
+      requestLayout();
+      endBatch();
+    }
+
+    /**
+     * whether a batch of the adapter is open, the observer may be registered in the middle of one
+     */
+    boolean mInBatch;
+
+    @Override
+    public void onBatchBegin() {
+      mInBatch = true;
+      beginBatch();
+    }
+
+    @Override
+    public void onBatchEnd() {
+      if (mInBatch) {
+        mInBatch = false;
+        endBatch();
+      }
+    }
+  }
+
+  /**
+   * remove and recycle the item children in [start, end)
+   */
+  private void removeItemChildren(int start, int end) {
+    for (int i = end - 1; i >= start; i--) {
+      View child = getChildAt(i);
+      removeViewAt(i);
+      recycleView(child);
+    }
+  }
+
+  @Override
+  public void requestLayout() {
+    // children added or removed, a child asked for a new size, padding or one of our own
+    // attributes changed: the line breaks computed in the last measure pass are stale
+    mLinesValid = false;
+    if (mBatchDepth > 0) {
+      mBatchLayoutRequested = true;
+      return;
+    }
+    super.requestLayout();
+  }
+
+  /**
+   * start a batch of changes: children added or removed and setters called until the matching
+   * {@link #endBatch()} only request a single layout, at the end of the batch. Batches nest.
+   */
+  public void beginBatch() {
+    mBatchDepth++;
+  }
+
+  /**
+   * end a batch started by {@link #beginBatch()}, the layout is requested once the outermost
+   * batch ends if anything asked for it
+   */
+  public void endBatch() {
+    if (mBatchDepth == 0) {
+      throw new IllegalStateException("endBatch() without beginBatch()");
+    }
+    if (--mBatchDepth == 0 && mBatchLayoutRequested) {
+      mBatchLayoutRequested = false;
+      requestLayout();
+      invalidate();
+    }
+  }
+
+  /**
+   * run {@code changes} in a batch
+   *
+   * @see #beginBatch()
+   */
+  public void runBatch(Runnable changes) {
+    beginBatch();
+    try {
+      changes.run();
+    } finally {
+      endBatch();
+    }
+  }
+
+  public boolean isInBatch() {
+    return mBatchDepth > 0;
+  }
+
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    long start = beginPass("FlowLayout measure");
+    int paddingTop = getPaddingTop();
+    int paddingBottom = getPaddingBottom();
+
+    int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+    int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+    int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+
+    if (mPendingLines != null) {
+      restoreLines(mPendingLines, widthSize);
+      mPendingLines = null;
+    }
+
+    // lines grow with their children unless our height is exact, so the height we are offered
+    // does not constrain them and a change of it keeps their cached measure
+    int childHeightSpec = heightMode == MeasureSpec.EXACTLY
+        ? heightMeasureSpec : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+    if (isInflatingLazily()) {
+      measureLazily(widthMeasureSpec, childHeightSpec);
+    } else {
+      if (isPopulatingAsync()) {
+        hideOverflowView();
+        if (getItemChildCount() < mAdapter.getCount()) {
+          schedulePopulation();
+        }
+      } else if (mAdapter != null) {
+        // max lines raised or cleared, bind what was left out
+        hideOverflowView();
+        int count = mAdapter.getCount();
+        for (int i = getChildCount(); i < count; i++) {
+          View child = obtainView(i);
+          addViewInLayout(child, i, child.getLayoutParams(), true);
+        }
+      }
+      mItemLimit = getItemChildCount();
+      boolean measured = measureItems(widthMeasureSpec, childHeightSpec);
+      if (!mLinesValid || measured || widthSize != mLinesWidth) {
+        computeLines(widthSize, false);
+      }
+    }
+    mLinesValid = true;
+
+    setMeasuredDimension(
+        widthSize,
+        heightMode == MeasureSpec.EXACTLY ? heightSize
+            : paddingTop + mEngine.getContentHeight() + paddingBottom
+    );
+    endPass(mRelayoutPending ? Metrics.PASS_RELAYOUT : Metrics.PASS_MEASURE, start);
+    mRelayoutPending = false;
+  }
+
+  /**
+   * @return true if a child was measured
+   */
+  private boolean measureItems(int widthMeasureSpec, int heightMeasureSpec) {
+    boolean measured = false;
+    int childCount = getChildCount();
+    // children past the items, or every child without uniform items, are measured on their own
+    int itemChildCount = mUniformItems ? getItemChildCount() : 0;
+    int uniformWidthSpec = -1;
+    int uniformHeightSpec = -1;
+    for (int i = 0; i < childCount; i++) {
+      View child = getChildAt(i);
+      if (child.getVisibility() == GONE) {
+        continue;
+      }
+      if (i >= itemChildCount || uniformWidthSpec == -1) {
+        measured |= measureChildCached(child, widthMeasureSpec, heightMeasureSpec);
+        if (i < itemChildCount) {
+          uniformWidthSpec = MeasureSpec.makeMeasureSpec(child.getMeasuredWidth(),
+              MeasureSpec.EXACTLY);
+          uniformHeightSpec = MeasureSpec.makeMeasureSpec(child.getMeasuredHeight(),
+              MeasureSpec.EXACTLY);
+        }
+      } else {
+        // uniform items take the size of the first one
+        measured |= measureChildWithSpecs(child, uniformWidthSpec, uniformHeightSpec);
+      }
+    }
+    return measured;
+  }
+
+  /**
+   * bind adapter items one after the other until one is dropped by max lines, then make room for
+   * the overflow view in the last line
+   */
+  private void measureLazily(int widthMeasureSpec, int heightMeasureSpec) {
+    int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+    int count = mAdapter.getCount();
+
+    int firstHidden;
+    while (true) {
+      measureItems(widthMeasureSpec, heightMeasureSpec);
+      mItemLimit = getItemChildCount();
+      computeLines(widthSize, false);
+      firstHidden = getFirstHiddenChild();
+      if (firstHidden < mItemLimit || mItemLimit >= count) {
+        break;
+      }
+      // uniform items fill max lines with a known number of items, bind them all at once
+      int target = mItemLimit + 1;
+      if (mRestoredItemLimit > mItemLimit) {
+        // the items which fitted before the state was saved, and the first hidden one
+        target = Math.min(count, mRestoredItemLimit + 1);
+      } else if (mUniformItems && mItemCount > 0) {
+        long fit = (long) mEngine.getMaxLines()
+            * FlowLayoutEngine.itemsPerLine(mEngine.getWidth(), mItemWidth[0]);
+        target = (int) Math.min(count, fit + 1);
+      }
+      for (int i = mItemLimit; i < Math.max(target, mItemLimit + 1); i++) {
+        View child = obtainView(i);
+        addViewInLayout(child, i, child.getLayoutParams(), true);
+      }
+    }
+    mRestoredItemLimit = 0;
+    // the first hidden item stays bound so the next pass knows it does not fit
+    for (int i = getItemChildCount() - 1; i > firstHidden; i--) {
+      View child = getChildAt(i);
+      removeViewInLayout(child);
+      recycleView(child);
+    }
+
+    int limit = firstHidden;
+    View overflow = null;
+    while (limit < count && (overflow = bindOverflowView(count - limit)) != null) {
+      measureChildCached(overflow, widthMeasureSpec, heightMeasureSpec);
+      mItemLimit = limit;
+      computeLines(widthSize, true);
+      if (limit == 0 || mEngine.getShownCount() == mItemCount) {
+        break;
+      }
+      // the overflow view does not fit, hide one more item for it
+      limit--;
+    }
+    if (overflow == null) {
+      hideOverflowView();
+      mItemLimit = limit;
+      computeLines(widthSize, false);
+    }
+  }
+
+  /**
+   * @return the first item child dropped by max lines, {@link #mItemLimit} if none is
+   */
+  private int getFirstHiddenChild() {
+    int shown = mEngine.getShownCount();
+    // items are never packed while inflating lazily, so slots follow the children
+    return shown == mItemCount ? mItemLimit : mItemChild[mEngine.getItem(shown)];
+  }
+
+  /**
+   * @return the overflow view bound to {@code hiddenCount} and attached as the last child, or
+   * null if the adapter has none
+   */
+  private View bindOverflowView(int hiddenCount) {
+    if (mOverflowShown && mOverflowHiddenCount == hiddenCount) {
+      return mOverflowView;
+    }
+    View overflow = mAdapter.getOverflowView(this, mOverflowView, hiddenCount);
+    mOverflowHiddenCount = hiddenCount;
+    if (overflow != mOverflowView) {
+      hideOverflowView();
+      mOverflowView = overflow;
+    }
+    if (overflow == null) {
+      return null;
+    }
+    if (!mOverflowShown) {
+      LayoutParams params = obtainLayoutParams(overflow);
+      params.mViewType = LayoutParams.INVALID_VIEW_TYPE;
+      params.invalidateMeasure();
+      addViewInLayout(overflow, getChildCount(), params, true);
+      mOverflowShown = true;
+    }
+    return overflow;
+  }
+
+  private void hideOverflowView() {
+    if (mOverflowShown) {
+      removeViewInLayout(mOverflowView);
+      mOverflowShown = false;
+    }
+  }
+
+  /**
+   * measure the child unless it was already measured with the same specs and did not ask for a
+   * new layout since
+   *
+   * @return true if the child was measured
+   */
+  private boolean measureChildCached(View child, int parentWidthSpec, int parentHeightSpec) {
+    LayoutParams params = (LayoutParams) child.getLayoutParams();
+    int widthSpec = getChildMeasureSpec(parentWidthSpec,
+        getPaddingLeft() + getPaddingRight() + params.leftMargin + params.rightMargin,
+        params.width);
+    int heightSpec = getChildMeasureSpec(parentHeightSpec,
+        getPaddingTop() + getPaddingBottom() + params.topMargin + params.bottomMargin,
+        params.height);
+    return measureChildWithSpecs(child, widthSpec, heightSpec);
+  }
+
+  /**
+   * measure the child with the given specs unless it was already measured with them and did not
+   * ask for a new layout since
+   *
+   * @return true if the child was measured
+   */
+  private boolean measureChildWithSpecs(View child, int widthSpec, int heightSpec) {
+    LayoutParams params = (LayoutParams) child.getLayoutParams();
+    if (params.mMeasureValid
+        && params.mWidthSpec == widthSpec
+        && params.mHeightSpec == heightSpec
+        && !child.isLayoutRequested()) {
+      return false;
+    }
+    child.measure(widthSpec, heightSpec);
+    if (mMetrics != null) {
+      mMetrics.mMeasuredChildren++;
+    }
+    params.mWidthSpec = widthSpec;
+    params.mHeightSpec = heightSpec;
+    params.mMeasureValid = true;
+    return true;
+  }
+
+  /**
+   * lines and positions computed by the last measure pass, the engine items are the children
+   * which are not gone
+   */
+  private final FlowLayoutEngine mEngine = new FlowLayoutEngine();
+
+  /**
+   * child index of every engine item
+   */
+  private int[] mItemChild = new int[0];
+
+  /**
+   * width of every engine item, margins included
+   */
+  private int[] mItemWidth = new int[0];
+
+  /**
+   * height of every engine item, margins included
+   */
+  private int[] mItemHeight = new int[0];
+
+  private int mItemCount;
+
+  /**
+   * whether {@link #mEngine} still matches the children, padding and attributes
+   */
+  private boolean mLinesValid;
+
+  private int mLinesWidth;
+
+  /**
+   * break the measured children into lines, lines beyond {@link #mMaxLines} are dropped
+   *
+   * @param width the whole width of this layout, including padding
+   */
+  private void computeLines(int width, boolean withOverflow) {
+    mLinesWidth = width;
+
+    int childCount = getChildCount();
+    if (mItemChild.length < childCount) {
+      mItemChild = LineTable.grow(mItemChild, childCount);
+      mItemWidth = LineTable.grow(mItemWidth, childCount);
+      mItemHeight = LineTable.grow(mItemHeight, childCount);
+    }
+    int n = 0;
+    int itemLimit = Math.min(mItemLimit, getItemChildCount());
+    for (int i = 0; i < itemLimit; i++) {
+      n = addItem(n, i);
+    }
+    if (withOverflow && mOverflowShown) {
+      n = addItem(n, childCount - 1);
+    }
+    mItemCount = n;
+
+    configureEngine(width);
+    if (mLayoutPlan != null && mLayoutPlan.matches(mEngine, mItemWidth, mItemHeight, n)) {
+      mLayoutPlan.applyTo(mEngine);
+    } else if (mUniformItems && n > 0 && !(withOverflow && mOverflowShown)
+        && mBreakStrategy == BREAK_STRATEGY_SIMPLE) {
+      mEngine.computeUniform(mItemWidth[0], mItemHeight[0], n);
+    } else {
+      mEngine.compute(mItemWidth, mItemHeight, n);
+    }
+    if (mMetrics != null) {
+      mMetrics.mComputedLines += mEngine.getComputedLineCount();
+    }
+  }
+
+  private void configureEngine(int width) {
+    mEngine.setWidth(width - getPaddingLeft() - getPaddingRight());
+    mEngine.setGravity(mGravity);
+    mEngine.setLinePadding(mLinePadding);
+    mEngine.setMaxLines(mMaxLines);
+    mEngine.setAlignLines(mAlignLines);
+    mEngine.setPackingStrategy(isInflatingLazily() ? null : mPackingStrategy);
+    mEngine.setBreakStrategy(mBreakStrategy);
+  }
+
+  /**
+   * add the child at {@code index} as the engine item {@code n} unless it is gone
+   *
+   * @return the number of engine items
+   */
+  private int addItem(int n, int index) {
+    View child = getChildAt(index);
+    if (child.getVisibility() == GONE) {
+      return n;
+    }
+    MarginLayoutParams params = (MarginLayoutParams) child.getLayoutParams();
+    mItemChild[n] = index;
+    mItemWidth[n] = child.getMeasuredWidth() + params.leftMargin + params.rightMargin;
+    mItemHeight[n] = child.getMeasuredHeight() + params.topMargin + params.bottomMargin;
+    return n + 1;
+  }
+
+  @Override
+  protected void onLayout(boolean changed, int l, int t, int r, int b) {
+    long start = beginPass("FlowLayout layout");
+    int paddingLeft = getPaddingLeft();
+    int paddingTop = getPaddingTop();
+
+    int width = r - l;
+    if (!mLinesValid || width != mLinesWidth) {
+      // laid out without a matching measure pass, e.g. the parent forced another width
+      computeLines(width, mOverflowShown);
+    }
+
+    int shown = mEngine.getShownCount();
+    for (int slot = 0; slot < shown; slot++) {
+      View child = getChildAt(mItemChild[mEngine.getItem(slot)]);
+      MarginLayoutParams params = (MarginLayoutParams) child.getLayoutParams();
+      int ll = paddingLeft + mEngine.getSlotLeft(slot) + params.leftMargin;
+      int tt = paddingTop + mEngine.getSlotTop(slot) + params.topMargin;
+      int rr = ll + child.getMeasuredWidth();
+      int bb = tt + child.getMeasuredHeight();
+      // children in the lines kept by the engine keep their frame
+      if (child.isLayoutRequested() || child.getLeft() != ll || child.getTop() != tt
+          || child.getRight() != rr || child.getBottom() != bb) {
+        child.layout(ll, tt, rr, bb);
+      }
+    }
+
+    // children beyond max lines keep no stale frame from a previous pass
+    for (int slot = shown; slot < mItemCount; slot++) {
+      getChildAt(mItemChild[mEngine.getItem(slot)]).layout(0, 0, 0, 0);
+    }
+    int itemChildCount = getItemChildCount();
+    for (int i = mItemLimit; i < itemChildCount; i++) {
+      View child = getChildAt(i);
+      if (child.getVisibility() != GONE) {
+        child.layout(0, 0, 0, 0);
+      }
+    }
+    endPass(Metrics.PASS_LAYOUT, start);
+  }
+
+  /**
+   * clip bounds of the canvas being drawn, or the visible rect when looking for focusables
+   */
+  private final Rect mClipBounds = new Rect();
+
+  /**
+   * whether {@link #drawChild(Canvas, View, long)} skips the children outside
+   * [{@link #mDrawTop}, {@link #mDrawBottom})
+   */
+  private boolean mClipDraw;
+
+  private int mDrawTop;
+
+  private int mDrawBottom;
+
+  @Override
+  protected void dispatchDraw(Canvas canvas) {
+    mClipDraw = mLinesValid && mEngine.getLineCount() > 0 && canvas.getClipBounds(mClipBounds);
+    if (mClipDraw) {
+      // snap the clip to the lines it crosses
+      int paddingTop = getPaddingTop();
+      int first = mEngine.getLineAt(mClipBounds.top - paddingTop);
+      int last = mEngine.getLineAt(mClipBounds.bottom - 1 - paddingTop);
+      mDrawTop = paddingTop + mEngine.getLineTop(first);
+      mDrawBottom = paddingTop + mEngine.getLineTop(last) + mEngine.getLineHeight(last);
+    }
+    super.dispatchDraw(canvas);
+    mClipDraw = false;
+  }
+
+  @Override
+  protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+    if (mClipDraw && (child.getBottom() <= mDrawTop || child.getTop() >= mDrawBottom)
+        && child.getAnimation() == null && !hasTransform(child)) {
+      return false;
+    }
+    return super.drawChild(canvas, child, drawingTime);
+  }
+
+  /**
+   * @return true if the child may be drawn away from its frame
+   */
+  @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+  private static boolean hasTransform(View child) {
+    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+        && !child.getMatrix().isIdentity();
+  }
+
+  /**
+   * only the children on the visible lines, and on the line before and after them so that
+   * keyboard navigation can scroll to the next line, are focus candidates
+   */
+  @Override
+  public void addFocusables(ArrayList<View> views, int direction, int focusableMode) {
+    if (getDescendantFocusability() != FOCUS_AFTER_DESCENDANTS || !mLinesValid
+        || isLayoutRequested() || mEngine.getLineCount() == 0
+        || !getLocalVisibleRect(mClipBounds)) {
+      super.addFocusables(views, direction, focusableMode);
+      return;
+    }
+    int paddingTop = getPaddingTop();
+    int firstLine = Math.max(0, mEngine.getLineAt(mClipBounds.top - paddingTop) - 1);
+    int lastLine = Math.min(mEngine.getLineCount() - 1,
+        mEngine.getLineAt(mClipBounds.bottom - 1 - paddingTop) + 1);
+    int count = views.size();
+    int end = mEngine.getLineEnd(lastLine);
+    for (int slot = mEngine.getLineStart(firstLine); slot < end; slot++) {
+      View child = getChildAt(mItemChild[mEngine.getItem(slot)]);
+      if (child.getVisibility() == VISIBLE) {
+        child.addFocusables(views, direction, focusableMode);
+      }
+    }
+    if (views.size() == count) {
+      // no candidate among those lines, e.g. this layout is focusable itself
+      super.addFocusables(views, direction, focusableMode);
+    }
+  }
+
+  @Override
+  protected Parcelable onSaveInstanceState() {
+    SavedState state = new SavedState(super.onSaveInstanceState());
+    state.mMaxLines = mMaxLines;
+    state.mCheckedPositions = getCheckedItemPositions();
+    state.mCheckedIds = new long[state.mCheckedPositions.length];
+    boolean stableIds = mAdapter != null && mAdapter.hasStableIds();
+    for (int i = 0; i < state.mCheckedIds.length; i++) {
+      state.mCheckedIds[i] = stableIds
+          ? mAdapter.getItemId(state.mCheckedPositions[i]) : FlowLayoutAdapter.NO_ID;
+    }
+    // packed, balanced and uniform lines are not broken incrementally, nothing to gain
+    if (mLinesValid && !isLayoutRequested() && mEngine.getPackingStrategy() == null
+        && mBreakStrategy == BREAK_STRATEGY_SIMPLE && !mUniformItems) {
+      int count = mEngine.getItemCount();
+      int lineCount = mEngine.getLineCount();
+      state.mLinesWidth = mLinesWidth;
+      state.mDataSignature = getDataSignature();
+      state.mItemLimit = isInflatingLazily() ? mItemLimit : 0;
+      state.mItemWidths = new int[count];
+      state.mItemHeights = new int[count];
+      for (int i = 0; i < count; i++) {
+        state.mItemWidths[i] = mEngine.getSlotWidth(i);
+        state.mItemHeights[i] = mEngine.getSlotHeight(i);
+      }
+      state.mLineEnds = new int[lineCount];
+      for (int line = 0; line < lineCount; line++) {
+        state.mLineEnds[line] = mEngine.getLineEnd(line);
+      }
+    }
+    return state;
+  }
+
+  @Override
+  protected void onRestoreInstanceState(Parcelable state) {
+    if (!(state instanceof SavedState)) {
+      super.onRestoreInstanceState(state);
+      return;
+    }
+    SavedState savedState = (SavedState) state;
+    super.onRestoreInstanceState(savedState.getSuperState());
+    setMaxLines(savedState.mMaxLines);
+    if (mChoiceMode != CHOICE_MODE_NONE) {
+      mCheckedItems.clear();
+      int itemChildCount = getItemChildCount();
+      for (int i = 0; i < savedState.mCheckedPositions.length; i++) {
+        int position = savedState.mCheckedPositions[i];
+        mCheckedItems.set(position, true, savedState.mCheckedIds[i]);
+        if (position < itemChildCount) {
+          setChildChecked(getChildAt(position), true);
+        }
+      }
+    }
+    if (savedState.mLineEnds != null) {
+      mPendingLines = savedState;
+    }
+  }
+
+  /**
+   * take the saved lines as the last pass if they were computed for the same width and data, the
+   * engine then only breaks lines again where the measured sizes differ from them
+   */
+  private void restoreLines(SavedState state, int width) {
+    if (state.mLinesWidth != width || state.mDataSignature != getDataSignature()) {
+      return;
+    }
+    configureEngine(width);
+    if (mEngine.getPackingStrategy() != null || mBreakStrategy != BREAK_STRATEGY_SIMPLE
+        || mUniformItems) {
+      return;
+    }
+    mEngine.restore(state.mItemWidths, state.mItemHeights, state.mItemWidths.length,
+        state.mLineEnds, state.mLineEnds.length);
+    mRestoredItemLimit = state.mItemLimit;
+  }
+
+  /**
+   * @return a value which changes with the number of items, and with their ids if stable
+   */
+  private long getDataSignature() {
+    if (mAdapter == null) {
+      return getItemChildCount();
+    }
+    int count = mAdapter.getCount();
+    long signature = count;
+    if (mAdapter.hasStableIds()) {
+      for (int i = 0; i < count; i++) {
+        signature = 31 * signature + mAdapter.getItemId(i);
+      }
+    }
+    return signature;
+  }
+
+  /**
+   * resort child elements to use lines as few as possible
+   *
+   * @see #setPackingStrategy(PackingStrategy)
+   */
+  public void relayoutToCompress() {
+    mRelayoutPending = true;
+    if (mPackingStrategy == null) {
+      setPackingStrategy(PackingStrategy.FIRST_FIT_DECREASING);
+    }
+  }
+
+  /**
+   * make child elements look in alignment, the free space of every line but the last one is
+   * shared between its children in layout, no child view is added
+   *
+   * @see #setAlignLines(boolean)
+   */
+  public void relayoutToAlign() {
+    mRelayoutPending = true;
+    setAlignLines(true);
+  }
+
+  /**
+   * use both of relayout methods together
+   */
+  public void relayoutToCompressAndAlign() {
+    beginBatch();
+    this.relayoutToCompress();
+    this.relayoutToAlign();
+    endBatch();
+  }
+
+  @Override
+  protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+    return p instanceof LayoutParams;
+  }
+
+  @Override
+  protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+    if (p instanceof MarginLayoutParams) {
+      return new LayoutParams((MarginLayoutParams) p);
+    }
+    return new LayoutParams(p);
+  }
+
+  @Override
+  public ViewGroup.LayoutParams generateLayoutParams(AttributeSet attrs) {
+    return new LayoutParams(getContext(), attrs);
+  }
+
+  @Override
+  protected ViewGroup.LayoutParams generateDefaultLayoutParams() {
+    return new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+  }
+
+  /**
+   * OnPopulateListener
+   * <p/>
+   * told when the asynchronous population has bound every adapter item
+   */
+  public interface OnPopulateListener {
+
+    void onPopulated(FlowLayout flowLayout);
+  }
+
+  /**
+   * MetricsListener
+   * <p/>
+   * told about every pass of a layout, on the main thread
+   *
+   * @see #setMetricsListener(MetricsListener)
+   */
+  public interface MetricsListener {
+
+    /**
+     * @param metrics reused for the next pass, copy what you keep
+     */
+    void onPass(FlowLayout flowLayout, Metrics metrics);
+  }
+
+  /**
+   * Metrics
+   * <p/>
+   * What a pass did. Counters include the work done since the previous pass, e.g. the views bound
+   * by an item notification before the measure pass it triggers.
+   */
+  public static final class Metrics {
+
+    /**
+     * onMeasure
+     */
+    public static final int PASS_MEASURE = 0;
+
+    /**
+     * onLayout
+     */
+    public static final int PASS_LAYOUT = 1;
+
+    /**
+     * the adapter items bound by setAdapter or a full refresh, or by a frame of async population
+     */
+    public static final int PASS_POPULATE = 2;
+
+    /**
+     * the measure pass applying relayoutToCompress or relayoutToAlign
+     */
+    public static final int PASS_RELAYOUT = 3;
+
+    int mPass;
+
+    long mDurationNanos;
+
+    int mMeasuredChildren;
+
+    int mComputedLines;
+
+    int mBoundViews;
+
+    int mCreatedViews;
+
+    int mRecycledViews;
+
+    Metrics() {
+    }
+
+    public int getPass() {
+      return mPass;
+    }
+
+    public long getDurationNanos() {
+      return mDurationNanos;
+    }
+
+    /**
+     * @return the children measured, children whose cached measure was kept are not counted
+     */
+    public int getMeasuredChildren() {
+      return mMeasuredChildren;
+    }
+
+    /**
+     * @return the lines broken, lines kept from the previous pass are not counted
+     */
+    public int getComputedLines() {
+      return mComputedLines;
+    }
+
+    /**
+     * @return the adapter views bound, created ones included
+     */
+    public int getBoundViews() {
+      return mBoundViews;
+    }
+
+    /**
+     * @return the adapter views created because no view could be reused
+     */
+    public int getCreatedViews() {
+      return mCreatedViews;
+    }
+
+    /**
+     * @return the views put into the recycled view pool
+     */
+    public int getRecycledViews() {
+      return mRecycledViews;
+    }
+
+    void reset() {
+      mDurationNanos = 0;
+      mMeasuredChildren = 0;
+      mComputedLines = 0;
+      mBoundViews = 0;
+      mCreatedViews = 0;
+      mRecycledViews = 0;
+    }
+  }
+
+  /**
+   * OnItemCheckedChangeListener
+   * <p/>
+   * told about every item whose checked state changed, once per item unless every item is
+   * checked at once
+   */
+  public interface OnItemCheckedChangeListener {
+
+    void onItemCheckedChanged(FlowLayout flowLayout, int position, boolean checked);
+
+    /**
+     * the items in [0, {@code count}) are checked by {@link FlowLayout#checkAll()}, some of
+     * them may have been checked already
+     */
+    void onAllItemsChecked(FlowLayout flowLayout, int count);
+  }
+
+  /**
+   * SavedState
+   * <p/>
+   * max lines, checked items, and the lines of the last pass with the width and data they were
+   * computed for
+   */
+  static class SavedState extends BaseSavedState {
+
+    int mMaxLines;
+
+    int[] mCheckedPositions;
+
+    long[] mCheckedIds;
+
+    int mLinesWidth;
+
+    long mDataSignature;
+
+    int mItemLimit;
+
+    int[] mItemWidths;
+
+    int[] mItemHeights;
+
+    /**
+     * null if no lines were saved
+     */
+    int[] mLineEnds;
+
+    SavedState(Parcelable superState) {
+      super(superState);
+    }
+
+    private SavedState(Parcel in) {
+      super(in);
+      mMaxLines = in.readInt();
+      mCheckedPositions = in.createIntArray();
+      mCheckedIds = in.createLongArray();
+      if (in.readInt() != 0) {
+        mLinesWidth = in.readInt();
+        mDataSignature = in.readLong();
+        mItemLimit = in.readInt();
+        mItemWidths = in.createIntArray();
+        mItemHeights = in.createIntArray();
+        mLineEnds = in.createIntArray();
+      }
+    }
+
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+      super.writeToParcel(out, flags);
+      out.writeInt(mMaxLines);
+      out.writeIntArray(mCheckedPositions);
+      out.writeLongArray(mCheckedIds);
+      out.writeInt(mLineEnds != null ? 1 : 0);
+      if (mLineEnds != null) {
+        out.writeInt(mLinesWidth);
+        out.writeLong(mDataSignature);
+        out.writeInt(mItemLimit);
+        out.writeIntArray(mItemWidths);
+        out.writeIntArray(mItemHeights);
+        out.writeIntArray(mLineEnds);
+      }
+    }
+
+    public static final Parcelable.Creator<SavedState> CREATOR =
+        new Parcelable.Creator<SavedState>() {
+          @Override
+          public SavedState createFromParcel(Parcel in) {
+            return new SavedState(in);
+          }
+
+          @Override
+          public SavedState[] newArray(int size) {
+            return new SavedState[size];
+          }
+        };
+  }
+
+  /**
+   * LayoutParams
+   * <p/>
+   * margin layout params which also remember what FlowLayout needs to know about the child
+   */
+  public static class LayoutParams extends MarginLayoutParams {
+
+    static final int INVALID_VIEW_TYPE = -1;
+
+    /**
+     * view type of the adapter position the child was bound to, invalid if the child was not
+     * created by the adapter
+     */
+    int mViewType = INVALID_VIEW_TYPE;
+
+    /**
+     * stable id of the item the child was bound to, {@link FlowLayoutAdapter#NO_ID} if the
+     * adapter has no stable ids
+     */
+    long mItemId = FlowLayoutAdapter.NO_ID;
+
+    /**
+     * specs of the last measure of the child, valid until it is bound to another item
+     */
+    boolean mMeasureValid;
+
+    int mWidthSpec;
+
+    int mHeightSpec;
+
+    public LayoutParams(Context c, AttributeSet attrs) {
+      super(c, attrs);
+    }
+
+    public LayoutParams(int width, int height) {
+      super(width, height);
+    }
+
+    public LayoutParams(MarginLayoutParams source) {
+      super(source);
+    }
+
+    public LayoutParams(ViewGroup.LayoutParams source) {
+      super(source);
+    }
 
-    public BlankView(Context context) {
-      super(context);
+    void invalidateMeasure() {
+      mMeasureValid = false;
     }
   }
 }
\ No newline at end of file
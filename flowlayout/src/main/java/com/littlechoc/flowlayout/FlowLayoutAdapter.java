@@ -4,8 +4,6 @@ import android.database.DataSetObservable;
 import android.database.DataSetObserver;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
-import android.widget.ListView;
 
 /**
  * FlowLayoutAdapter
@@ -15,7 +13,12 @@ import android.widget.ListView;
 
 public abstract class FlowLayoutAdapter {
 
-  private DataSetObservable mDataSetObservable = new DataSetObservable();
+  /**
+   * id of an item without stable id
+   */
+  public static final long NO_ID = -1;
+
+  private AdapterDataObservable mDataSetObservable = new AdapterDataObservable();
 
   public int getCount() {
     return 0;
@@ -25,12 +28,144 @@ public abstract class FlowLayoutAdapter {
     return null;
   }
 
+  /**
+   * whether {@link #getItemId(int)} returns the same id for the same item across changes, which
+   * lets FlowLayout keep what it knows about the item, e.g. its measured size. On
+   * {@link #notifyDataSetChanged()} the children are matched to the items by id, so that only the
+   * views of new ids are created and the others keep their size and checked state.
+   */
+  public boolean hasStableIds() {
+    return false;
+  }
+
+  /**
+   * @return the stable id of the item at {@code position}, only used if {@link #hasStableIds()}
+   */
+  public long getItemId(int position) {
+    return NO_ID;
+  }
+
+  /**
+   * the view type of the item at {@code position}, views are only recycled between positions of
+   * the same type
+   *
+   * @return a type in [0, {@link #getViewTypeCount()})
+   */
+  public int getItemViewType(int position) {
+    return 0;
+  }
+
+  public int getViewTypeCount() {
+    return 1;
+  }
+
+  /**
+   * create a view for the item at {@code position}
+   */
   public abstract View getView(ViewGroup parent, int position);
 
+  /**
+   * bind the item at {@code position} to a view. Adapters override this method to reuse
+   * {@code convertView}, by default a new view is created with {@link #getView(ViewGroup, int)}.
+   *
+   * @param convertView a recycled view of the same view type to bind the item to, may be null
+   * @return {@code convertView} bound to the item, or a new view
+   */
+  public View getView(ViewGroup parent, View convertView, int position) {
+    return getView(parent, position);
+  }
+
+  /**
+   * a view telling how many items are hidden by max lines, shown at the end of the last line when
+   * FlowLayout inflates items lazily
+   *
+   * @param convertView the overflow view returned last time, to be rebound, may be null
+   * @param hiddenCount the number of items which are not shown
+   * @return the overflow view, null for none
+   * @see FlowLayout#setLazyInflation(boolean)
+   */
+  public View getOverflowView(ViewGroup parent, View convertView, int hiddenCount) {
+    return null;
+  }
+
+  /**
+   * notify observers that the whole data set may have changed, every view is rebuilt
+   */
   public void notifyDataSetChanged() {
     mDataSetObservable.notifyChanged();
   }
 
+  public void notifyItemChanged(int position) {
+    mDataSetObservable.notifyItemRangeChanged(position, 1);
+  }
+
+  /**
+   * notify observers that the items in [positionStart, positionStart + itemCount) changed,
+   * only their views are rebuilt
+   */
+  public void notifyItemRangeChanged(int positionStart, int itemCount) {
+    mDataSetObservable.notifyItemRangeChanged(positionStart, itemCount);
+  }
+
+  public void notifyItemInserted(int position) {
+    mDataSetObservable.notifyItemRangeInserted(position, 1);
+  }
+
+  /**
+   * notify observers that {@code itemCount} items were inserted at {@code positionStart}, items
+   * after them are shifted
+   */
+  public void notifyItemRangeInserted(int positionStart, int itemCount) {
+    mDataSetObservable.notifyItemRangeInserted(positionStart, itemCount);
+  }
+
+  public void notifyItemRemoved(int position) {
+    mDataSetObservable.notifyItemRangeRemoved(position, 1);
+  }
+
+  /**
+   * notify observers that the items in [positionStart, positionStart + itemCount) were removed
+   */
+  public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+    mDataSetObservable.notifyItemRangeRemoved(positionStart, itemCount);
+  }
+
+  /**
+   * notify observers that the item at {@code fromPosition} now lives at {@code toPosition}
+   */
+  public void notifyItemMoved(int fromPosition, int toPosition) {
+    mDataSetObservable.notifyItemMoved(fromPosition, toPosition);
+  }
+
+  /**
+   * start a batch of notifications, observing layouts apply them with a single layout pass once
+   * the matching {@link #endBatch()} is called. Batches nest.
+   */
+  public void beginBatch() {
+    mDataSetObservable.beginBatch();
+  }
+
+  /**
+   * end a batch started by {@link #beginBatch()}
+   */
+  public void endBatch() {
+    mDataSetObservable.endBatch();
+  }
+
+  /**
+   * run {@code changes}, which are expected to notify observers, in a batch
+   *
+   * @see #beginBatch()
+   */
+  public void runBatch(Runnable changes) {
+    beginBatch();
+    try {
+      changes.run();
+    } finally {
+      endBatch();
+    }
+  }
+
   public void registerDataSetObserver(DataSetObserver observer) {
     mDataSetObservable.registerObserver(observer);
   }
@@ -38,4 +173,165 @@ public abstract class FlowLayoutAdapter {
   public void unregisterDataSetObserver(DataSetObserver observer) {
     mDataSetObservable.unregisterObserver(observer);
   }
+
+  /**
+   * AdapterDataObserver
+   * <p/>
+   * an observer which also receives item level changes, by default every change falls back to
+   * {@link #onChanged()}
+   */
+  public static abstract class AdapterDataObserver extends DataSetObserver {
+
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+      onChanged();
+    }
+
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+      onChanged();
+    }
+
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+      onChanged();
+    }
+
+    public void onItemMoved(int fromPosition, int toPosition) {
+      onChanged();
+    }
+
+    /**
+     * the outermost batch of the adapter begins, notifications until {@link #onBatchEnd()} may
+     * be applied together
+     */
+    public void onBatchBegin() {
+    }
+
+    public void onBatchEnd() {
+    }
+  }
+
+  /**
+   * dispatch item level changes to {@link AdapterDataObserver}s, plain {@link DataSetObserver}s
+   * only get {@link DataSetObserver#onChanged()}, once per batch
+   */
+  private static class AdapterDataObservable extends DataSetObservable {
+
+    private int mBatchDepth;
+
+    /**
+     * whether plain observers missed a change during the current batch
+     */
+    private boolean mBatchChanged;
+
+    void beginBatch() {
+      if (mBatchDepth++ > 0) {
+        return;
+      }
+      synchronized (mObservers) {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+          DataSetObserver observer = mObservers.get(i);
+          if (observer instanceof AdapterDataObserver) {
+            ((AdapterDataObserver) observer).onBatchBegin();
+          }
+        }
+      }
+    }
+
+    void endBatch() {
+      if (mBatchDepth == 0) {
+        throw new IllegalStateException("endBatch() without beginBatch()");
+      }
+      if (--mBatchDepth > 0) {
+        return;
+      }
+      boolean changed = mBatchChanged;
+      mBatchChanged = false;
+      synchronized (mObservers) {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+          DataSetObserver observer = mObservers.get(i);
+          if (observer instanceof AdapterDataObserver) {
+            ((AdapterDataObserver) observer).onBatchEnd();
+          } else if (changed) {
+            observer.onChanged();
+          }
+        }
+      }
+    }
+
+    @Override
+    public void notifyChanged() {
+      synchronized (mObservers) {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+          DataSetObserver observer = mObservers.get(i);
+          if (observer instanceof AdapterDataObserver) {
+            observer.onChanged();
+          } else {
+            notifyPlainObserver(observer);
+          }
+        }
+      }
+    }
+
+    /**
+     * plain observers only hear about a batch once it ends
+     */
+    private void notifyPlainObserver(DataSetObserver observer) {
+      if (mBatchDepth > 0) {
+        mBatchChanged = true;
+      } else {
+        observer.onChanged();
+      }
+    }
+
+    void notifyItemRangeChanged(int positionStart, int itemCount) {
+      synchronized (mObservers) {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+          DataSetObserver observer = mObservers.get(i);
+          if (observer instanceof AdapterDataObserver) {
+            ((AdapterDataObserver) observer).onItemRangeChanged(positionStart, itemCount);
+          } else {
+            notifyPlainObserver(observer);
+          }
+        }
+      }
+    }
+
+    void notifyItemRangeInserted(int positionStart, int itemCount) {
+      synchronized (mObservers) {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+          DataSetObserver observer = mObservers.get(i);
+          if (observer instanceof AdapterDataObserver) {
+            ((AdapterDataObserver) observer).onItemRangeInserted(positionStart, itemCount);
+          } else {
+            notifyPlainObserver(observer);
+          }
+        }
+      }
+    }
+
+    void notifyItemRangeRemoved(int positionStart, int itemCount) {
+      synchronized (mObservers) {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+          DataSetObserver observer = mObservers.get(i);
+          if (observer instanceof AdapterDataObserver) {
+            ((AdapterDataObserver) observer).onItemRangeRemoved(positionStart, itemCount);
+          } else {
+            notifyPlainObserver(observer);
+          }
+        }
+      }
+    }
+
+    void notifyItemMoved(int fromPosition, int toPosition) {
+      synchronized (mObservers) {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+          DataSetObserver observer = mObservers.get(i);
+          if (observer instanceof AdapterDataObserver) {
+            ((AdapterDataObserver) observer).onItemMoved(fromPosition, toPosition);
+          } else {
+            notifyPlainObserver(observer);
+          }
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,607 @@
+package com.littlechoc.flowlayout;
+
+/**
+ * FlowLayoutEngine
+ * <p/>
+ * The line breaking and placement of a flow layout, free of any Android class. Items are given
+ * as primitive arrays of their outer sizes, margins included, and get the position of their outer
+ * box relative to the top left corner of the content, padding excluded.
+ * <p/>
+ * An engine is not thread safe but does not depend on a view either, so it can run on any thread
+ * and its arrays are reused from one pass to the next.
+ * <p/>
+ * Unless items are packed or balanced, a pass only breaks lines again from the line holding the
+ * first item whose size changed since the last pass, and stops as soon as the lines after the
+ * changed items fall back on their previous breaks.
+ */
+public class FlowLayoutEngine {
+
+  /**
+   * max lines is unlimited
+   */
+  public static final int UNLIMITED_LINES = 0;
+
+  /**
+   * gravity start
+   */
+  public static final int START = 0;
+
+  /**
+   * gravity center
+   */
+  public static final int CENTER = 1;
+
+  /**
+   * gravity end
+   */
+  public static final int END = 2;
+
+  /**
+   * gravity justify align
+   */
+  public static final int ALIGN = 3;
+
+  /**
+   * break strategy filling every line before the next one
+   */
+  public static final int BREAK_STRATEGY_SIMPLE = 0;
+
+  /**
+   * break strategy keeping the item order with lines as even as possible
+   */
+  public static final int BREAK_STRATEGY_BALANCED = 1;
+
+  private int mWidth;
+
+  private int mGravity = START;
+
+  private int mLinePadding;
+
+  private int mMaxLines = UNLIMITED_LINES;
+
+  private boolean mAlignLines;
+
+  private PackingStrategy mPackingStrategy;
+
+  /**
+   * created with the first packed pass
+   */
+  private PackingStrategy.Scratch mPackingScratch;
+
+  private int mBreakStrategy = BREAK_STRATEGY_SIMPLE;
+
+  /**
+   * created with the first balanced pass
+   */
+  private BalancedLineBreaker mBalancedBreaker;
+
+  private final LineTable mLines = new LineTable();
+
+  /**
+   * the lines of the last pass from the first line broken again on
+   */
+  private final LineTable mOldLines = new LineTable();
+
+  /**
+   * whether a setting changed since the last pass, which then starts over from the first line
+   */
+  private boolean mConfigChanged = true;
+
+  private int mCount;
+
+  /**
+   * item index laid out at every slot, slots are the items in layout order
+   */
+  private int[] mItem = new int[0];
+
+  /**
+   * slot of every item, the inverse of {@link #mItem}
+   */
+  private int[] mSlot = new int[0];
+
+  private int[] mSlotWidth = new int[0];
+
+  private int[] mSlotHeight = new int[0];
+
+  private int[] mLeft = new int[0];
+
+  private int[] mTop = new int[0];
+
+  private int[] mLineTop = new int[0];
+
+  private int mContentHeight;
+
+  /**
+   * lines broken or counted by the last pass, kept lines excluded
+   */
+  private int mComputedLines;
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  /**
+   * @param width the width available to the lines, padding excluded
+   */
+  public void setWidth(int width) {
+    if (mWidth != width) {
+      this.mWidth = width;
+      mConfigChanged = true;
+    }
+  }
+
+  public int getGravity() {
+    return mGravity;
+  }
+
+  public void setGravity(int gravity) {
+    if (mGravity != gravity) {
+      this.mGravity = gravity;
+      mConfigChanged = true;
+    }
+  }
+
+  public int getLinePadding() {
+    return mLinePadding;
+  }
+
+  public void setLinePadding(int linePadding) {
+    if (mLinePadding != linePadding) {
+      this.mLinePadding = linePadding;
+      mConfigChanged = true;
+    }
+  }
+
+  public int getMaxLines() {
+    return mMaxLines;
+  }
+
+  public void setMaxLines(int maxLines) {
+    if (mMaxLines != maxLines) {
+      this.mMaxLines = maxLines;
+      mConfigChanged = true;
+    }
+  }
+
+  public boolean isAlignLines() {
+    return mAlignLines;
+  }
+
+  /**
+   * @see FlowLayout#setAlignLines(boolean)
+   */
+  public void setAlignLines(boolean alignLines) {
+    if (mAlignLines != alignLines) {
+      this.mAlignLines = alignLines;
+      mConfigChanged = true;
+    }
+  }
+
+  public PackingStrategy getPackingStrategy() {
+    return mPackingStrategy;
+  }
+
+  public void setPackingStrategy(PackingStrategy packingStrategy) {
+    if (mPackingStrategy != packingStrategy) {
+      this.mPackingStrategy = packingStrategy;
+      mConfigChanged = true;
+    }
+  }
+
+  public int getBreakStrategy() {
+    return mBreakStrategy;
+  }
+
+  /**
+   * @see FlowLayout#setBreakStrategy(int)
+   */
+  public void setBreakStrategy(int breakStrategy) {
+    if (mBreakStrategy != breakStrategy) {
+      this.mBreakStrategy = breakStrategy;
+      mConfigChanged = true;
+    }
+  }
+
+  /**
+   * make the next pass break every line again, even if no item changed
+   */
+  public void invalidate() {
+    mConfigChanged = true;
+  }
+
+  /**
+   * break the items into lines and place them
+   *
+   * @param widths  outer widths of the items, margins included
+   * @param heights outer heights of the items, margins included
+   * @param count   number of valid items in the arrays
+   */
+  public void compute(int[] widths, int[] heights, int count) {
+    ensureCapacity(count);
+    // a balanced breaking depends on every item, so does a packed order
+    if (mConfigChanged || mPackingStrategy != null || mBreakStrategy == BREAK_STRATEGY_BALANCED
+        || mLines.count == 0 || count == 0) {
+      mConfigChanged = false;
+      computeAll(widths, heights, count);
+    } else {
+      computeChanged(widths, heights, count);
+    }
+  }
+
+  /**
+   * place {@code count} items of the same size, the lines are counted instead of being broken.
+   * Neither the packing nor the break strategy applies, and the next
+   * {@link #compute(int[], int[], int)} breaks every line again.
+   *
+   * @param itemWidth  outer width of every item, margins included
+   * @param itemHeight outer height of every item, margins included
+   */
+  public void computeUniform(int itemWidth, int itemHeight, int count) {
+    ensureCapacity(count);
+    mConfigChanged = true;
+    mCount = count;
+    for (int i = 0; i < count; i++) {
+      mItem[i] = i;
+      mSlot[i] = i;
+      mSlotWidth[i] = itemWidth;
+      mSlotHeight[i] = itemHeight;
+    }
+    int perLine = Math.min(itemsPerLine(mWidth, itemWidth), Math.max(1, count));
+    int lineCount = (count + perLine - 1) / perLine;
+    if (mMaxLines > 0) {
+      lineCount = Math.min(lineCount, mMaxLines);
+    }
+    mLines.clear();
+    for (int line = 0; line < lineCount; line++) {
+      int start = line * perLine;
+      int end = Math.min(count, start + perLine);
+      mLines.add(start, end, (end - start) * itemWidth, itemHeight);
+    }
+    mLines.keptFrom = 0;
+    mLines.keptTo = 0;
+    mComputedLines = mLines.count;
+    place(0);
+  }
+
+  /**
+   * take the lines of an earlier pass, e.g. saved with the instance state, as if this engine had
+   * computed them with its current settings. The next {@link #compute(int[], int[], int)} then
+   * only breaks lines again from the first item whose size differs. Items must be in their own
+   * order, as without packing.
+   *
+   * @param lineEnds index after the last item of each line
+   */
+  public void restore(int[] widths, int[] heights, int count, int[] lineEnds, int lineCount) {
+    ensureCapacity(count);
+    mCount = count;
+    for (int i = 0; i < count; i++) {
+      mItem[i] = i;
+      mSlot[i] = i;
+      mSlotWidth[i] = widths[i];
+      mSlotHeight[i] = heights[i];
+    }
+    mLines.clear();
+    int start = 0;
+    for (int line = 0; line < lineCount; line++) {
+      int end = lineEnds[line];
+      if (end <= start || end > count) {
+        // not lines of these items, start over on the next pass
+        mLines.clear();
+        mConfigChanged = true;
+        break;
+      }
+      int width = 0;
+      int height = 0;
+      for (int i = start; i < end; i++) {
+        width += widths[i];
+        height = Math.max(height, heights[i]);
+      }
+      mLines.add(start, end, width, height);
+      start = end;
+    }
+    if (mLines.count > 0) {
+      mConfigChanged = mPackingStrategy != null;
+    }
+    mLines.keptFrom = 0;
+    mLines.keptTo = 0;
+    mComputedLines = 0;
+    place(0);
+  }
+
+  /**
+   * @return the number of items of {@code itemWidth} the greedy line breaking puts in a line of
+   * {@code width}, at least one
+   */
+  public static int itemsPerLine(int width, int itemWidth) {
+    return itemWidth <= 0 ? Integer.MAX_VALUE : Math.max(1, width / itemWidth);
+  }
+
+  private void computeAll(int[] widths, int[] heights, int count) {
+    mCount = count;
+    for (int i = 0; i < count; i++) {
+      mItem[i] = i;
+    }
+    if (mPackingStrategy != null && count > 1) {
+      if (mPackingScratch == null) {
+        mPackingScratch = new PackingStrategy.Scratch();
+      }
+      mPackingStrategy.pack(widths, count, mWidth, mItem, mPackingScratch);
+    }
+    for (int i = 0; i < count; i++) {
+      mSlot[mItem[i]] = i;
+      mSlotWidth[i] = widths[mItem[i]];
+      mSlotHeight[i] = heights[mItem[i]];
+    }
+    if (mBreakStrategy == BREAK_STRATEGY_BALANCED) {
+      if (mBalancedBreaker == null) {
+        mBalancedBreaker = new BalancedLineBreaker();
+      }
+      mBalancedBreaker.breakLines(mSlotWidth, mSlotHeight, count, mWidth, mMaxLines, mLines);
+    } else {
+      mLines.breakLines(mSlotWidth, mSlotHeight, count, mWidth, mMaxLines);
+    }
+    mLines.keptFrom = 0;
+    mLines.keptTo = 0;
+    mComputedLines = mLines.count;
+    place(0);
+  }
+
+  /**
+   * items keep their slot without packing, compare them to the slot sizes of the last pass
+   */
+  private void computeChanged(int[] widths, int[] heights, int count) {
+    int first = 0;
+    int common = Math.min(count, mCount);
+    while (first < common && widths[first] == mSlotWidth[first]
+        && heights[first] == mSlotHeight[first]) {
+      first++;
+    }
+    if (first == count && count == mCount) {
+      mComputedLines = 0;
+      return;
+    }
+    int stableFrom = count;
+    if (count == mCount) {
+      while (stableFrom > first && widths[stableFrom - 1] == mSlotWidth[stableFrom - 1]
+          && heights[stableFrom - 1] == mSlotHeight[stableFrom - 1]) {
+        stableFrom--;
+      }
+    }
+    for (int i = first; i < (count == mCount ? stableFrom : count); i++) {
+      mItem[i] = i;
+      mSlot[i] = i;
+      mSlotWidth[i] = widths[i];
+      mSlotHeight[i] = heights[i];
+    }
+    mCount = count;
+
+    // start one item early, so the line before the change is placed again when it becomes the
+    // last line, which keeps its gravity in align lines mode
+    int fromLine = mLines.lineOf(Math.max(0, Math.min(first, mLines.itemCount()) - 1));
+    mOldLines.copyFrom(mLines, fromLine);
+    mLines.rebreakLines(mSlotWidth, mSlotHeight, count, mWidth, mMaxLines, fromLine, stableFrom,
+        mOldLines);
+    mComputedLines = mLines.count - fromLine - (mLines.keptTo - mLines.keptFrom);
+    place(fromLine);
+  }
+
+  /**
+   * place the lines from {@code fromLine} on, the slots of kept lines only move vertically
+   */
+  private void place(int fromLine) {
+    mLineTop = LineTable.grow(mLineTop, mLines.count);
+    int top = fromLine == 0 ? 0
+        : mLineTop[fromLine - 1] + mLines.height[fromLine - 1] + mLinePadding;
+    for (int i = fromLine; i < mLines.count; i++) {
+      int start = mLines.start[i];
+      int end = mLines.end[i];
+      mLineTop[i] = top;
+      if (i >= mLines.keptFrom && i < mLines.keptTo) {
+        if (mTop[start] != top) {
+          for (int j = start; j < end; j++) {
+            mTop[j] = top;
+          }
+        }
+        top += mLines.height[i] + mLinePadding;
+        continue;
+      }
+      int lineWidth = mLines.width[i];
+      int space = 0;
+      int gravity = mGravity;
+      if (mAlignLines && end < mCount) {
+        // every full line is justified, the last one keeps the gravity
+        gravity = ALIGN;
+      }
+      int left;
+      switch (gravity) {
+        case CENTER:
+          left = (mWidth - lineWidth) / 2;
+          break;
+        case END:
+          left = mWidth - lineWidth;
+          break;
+        case ALIGN:
+          left = 0;
+          space = end - start == 1 ? 0 : (mWidth - lineWidth) / (end - start - 1);
+          break;
+        default:
+          left = 0;
+          break;
+      }
+      for (int j = start; j < end; j++) {
+        mLeft[j] = left;
+        mTop[j] = top;
+        left += mSlotWidth[j] + space;
+      }
+      top += mLines.height[i] + mLinePadding;
+    }
+    mContentHeight = mLines.count == 0 ? 0 : top - mLinePadding;
+  }
+
+  private void ensureCapacity(int count) {
+    if (mItem.length < count) {
+      mItem = LineTable.grow(mItem, count);
+      mSlot = LineTable.grow(mSlot, count);
+      mSlotWidth = LineTable.grow(mSlotWidth, count);
+      mSlotHeight = LineTable.grow(mSlotHeight, count);
+      mLeft = LineTable.grow(mLeft, count);
+      mTop = LineTable.grow(mTop, count);
+    }
+  }
+
+  /**
+   * @return the number of items of the last pass
+   */
+  public int getItemCount() {
+    return mCount;
+  }
+
+  /**
+   * @return the number of items placed in a line, items after them are dropped by max lines
+   */
+  public int getShownCount() {
+    return mLines.itemCount();
+  }
+
+  public int getLineCount() {
+    return mLines.count;
+  }
+
+  /**
+   * @return the first slot of {@code line}
+   */
+  public int getLineStart(int line) {
+    return mLines.start[line];
+  }
+
+  /**
+   * @return the slot after the last one of {@code line}
+   */
+  public int getLineEnd(int line) {
+    return mLines.end[line];
+  }
+
+  public int getLineTop(int line) {
+    return mLineTop[line];
+  }
+
+  public int getLineWidth(int line) {
+    return mLines.width[line];
+  }
+
+  public int getLineHeight(int line) {
+    return mLines.height[line];
+  }
+
+  /**
+   * @return the number of lines the last pass broke, the lines it kept from the pass before are
+   * not counted
+   */
+  public int getComputedLineCount() {
+    return mComputedLines;
+  }
+
+  /**
+   * @return the sum of the line heights and the padding between them
+   */
+  public int getContentHeight() {
+    return mContentHeight;
+  }
+
+  /**
+   * @return the index of the item laid out at {@code slot}, slots are the items in layout order
+   */
+  public int getItem(int slot) {
+    return mItem[slot];
+  }
+
+  /**
+   * @return the slot {@code item} is laid out at
+   */
+  public int getSlotOfItem(int item) {
+    return mSlot[item];
+  }
+
+  /**
+   * @return the outer width of the item at {@code slot}
+   */
+  public int getSlotWidth(int slot) {
+    return mSlotWidth[slot];
+  }
+
+  public int getSlotHeight(int slot) {
+    return mSlotHeight[slot];
+  }
+
+  public int getSlotLeft(int slot) {
+    return mLeft[slot];
+  }
+
+  public int getSlotTop(int slot) {
+    return mTop[slot];
+  }
+
+  /**
+   * @return the line containing {@code y}, clamped to the first and last lines, -1 if there is
+   * no line
+   */
+  public int getLineAt(int y) {
+    int low = 0;
+    int high = mLines.count - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (mLineTop[mid] <= y) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  /**
+   * @return the slot whose outer box contains ({@code x}, {@code y}), -1 if there is none
+   */
+  public int getSlotAt(int x, int y) {
+    int line = getLineAt(y);
+    if (line == -1 || y < mLineTop[line]) {
+      return -1;
+    }
+    // lefts increase along a line, find the last slot starting at or before x
+    int low = mLines.start[line];
+    int high = mLines.end[line] - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (mLeft[mid] <= x) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    if (x < mLeft[low] || x >= mLeft[low] + mSlotWidth[low]
+        || y >= mTop[low] + mSlotHeight[low]) {
+      return -1;
+    }
+    return low;
+  }
+
+  /**
+   * @return the line holding {@code slot}, -1 if the slot is dropped by max lines
+   */
+  public int getLineOfSlot(int slot) {
+    if (slot >= mLines.itemCount()) {
+      return -1;
+    }
+    int low = 0;
+    int high = mLines.count - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (mLines.start[mid] <= slot) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+}
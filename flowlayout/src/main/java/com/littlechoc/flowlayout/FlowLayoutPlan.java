@@ -0,0 +1,118 @@
+package com.littlechoc.flowlayout;
+
+import java.util.Arrays;
+
+/**
+ * FlowLayoutPlan
+ * <p/>
+ * The lines of a flow layout computed ahead of time, on any thread, from item sizes known before
+ * the views are bound, e.g. measured from the text of tags with a {@code Paint}. A plan is
+ * immutable and can be handed to the main thread with
+ * {@link FlowLayout#setLayoutPlan(FlowLayoutPlan)}. FlowLayout then takes its lines as they are
+ * instead of breaking them, as long as the plan was computed for its content width and settings
+ * and its children measure to the planned sizes.
+ */
+public final class FlowLayoutPlan {
+
+  private final int mWidth;
+
+  private final int mGravity;
+
+  private final int mLinePadding;
+
+  private final int mMaxLines;
+
+  private final boolean mAlignLines;
+
+  private final int mBreakStrategy;
+
+  private final int[] mItemWidths;
+
+  private final int[] mItemHeights;
+
+  private final int[] mLineEnds;
+
+  private final int mContentHeight;
+
+  private FlowLayoutPlan(FlowLayoutEngine engine, int[] widths, int[] heights, int count) {
+    mWidth = engine.getWidth();
+    mGravity = engine.getGravity();
+    mLinePadding = engine.getLinePadding();
+    mMaxLines = engine.getMaxLines();
+    mAlignLines = engine.isAlignLines();
+    mBreakStrategy = engine.getBreakStrategy();
+    mItemWidths = Arrays.copyOf(widths, count);
+    mItemHeights = Arrays.copyOf(heights, count);
+    mLineEnds = new int[engine.getLineCount()];
+    for (int line = 0; line < mLineEnds.length; line++) {
+      mLineEnds[line] = engine.getLineEnd(line);
+    }
+    mContentHeight = engine.getContentHeight();
+  }
+
+  /**
+   * break the items into lines with the settings of {@code engine}, which must match the ones of
+   * the layout the plan is for: its width is the content width of the layout, padding excluded
+   *
+   * @param widths  outer widths of the items, margins included
+   * @param heights outer heights of the items, margins included
+   * @throws IllegalArgumentException if the engine packs items, which changes their order
+   */
+  public static FlowLayoutPlan compute(FlowLayoutEngine engine, int[] widths, int[] heights,
+                                       int count) {
+    if (engine.getPackingStrategy() != null) {
+      throw new IllegalArgumentException("packed items have no plan");
+    }
+    engine.invalidate();
+    engine.compute(widths, heights, count);
+    return new FlowLayoutPlan(engine, widths, heights, count);
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getItemCount() {
+    return mItemWidths.length;
+  }
+
+  public int getLineCount() {
+    return mLineEnds.length;
+  }
+
+  /**
+   * @return the height of the lines, padding of the layout excluded
+   */
+  public int getContentHeight() {
+    return mContentHeight;
+  }
+
+  /**
+   * @return true if {@code engine} has the settings of this plan and the items have its sizes
+   */
+  boolean matches(FlowLayoutEngine engine, int[] widths, int[] heights, int count) {
+    if (engine.getWidth() != mWidth
+        || engine.getGravity() != mGravity
+        || engine.getLinePadding() != mLinePadding
+        || engine.getMaxLines() != mMaxLines
+        || engine.isAlignLines() != mAlignLines
+        || engine.getBreakStrategy() != mBreakStrategy
+        || engine.getPackingStrategy() != null
+        || count != mItemWidths.length) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      if (widths[i] != mItemWidths[i] || heights[i] != mItemHeights[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * make the lines of this plan the last pass of {@code engine}
+   */
+  void applyTo(FlowLayoutEngine engine) {
+    engine.restore(mItemWidths, mItemHeights, mItemWidths.length, mLineEnds, mLineEnds.length);
+  }
+}
@@ -0,0 +1,106 @@
+package com.littlechoc.flowlayout;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * FrameScheduler
+ * <p/>
+ * Runs a task once at the next frame, through Choreographer on API 16 and above and through the
+ * main looper below it. Scheduling an already scheduled task does nothing.
+ */
+abstract class FrameScheduler {
+
+  final Runnable mTask;
+
+  private boolean mScheduled;
+
+  FrameScheduler(Runnable task) {
+    mTask = task;
+  }
+
+  static FrameScheduler create(Runnable task) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      return new ChoreographerScheduler(task);
+    }
+    return new HandlerScheduler(task);
+  }
+
+  boolean isScheduled() {
+    return mScheduled;
+  }
+
+  void schedule() {
+    if (!mScheduled) {
+      mScheduled = true;
+      post();
+    }
+  }
+
+  void cancel() {
+    if (mScheduled) {
+      mScheduled = false;
+      remove();
+    }
+  }
+
+  void dispatch() {
+    mScheduled = false;
+    mTask.run();
+  }
+
+  abstract void post();
+
+  abstract void remove();
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private static class ChoreographerScheduler extends FrameScheduler
+      implements Choreographer.FrameCallback {
+
+    ChoreographerScheduler(Runnable task) {
+      super(task);
+    }
+
+    @Override
+    void post() {
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    void remove() {
+      Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      dispatch();
+    }
+  }
+
+  private static class HandlerScheduler extends FrameScheduler implements Runnable {
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    HandlerScheduler(Runnable task) {
+      super(task);
+    }
+
+    @Override
+    void post() {
+      mHandler.post(this);
+    }
+
+    @Override
+    void remove() {
+      mHandler.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+      dispatch();
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package com.littlechoc.flowlayout;
+
+/**
+ * LineTable
+ * <p/>
+ * Primitive storage of the lines of a flow pass. A line holds the items in [start, end) of the
+ * item arrays it was broken from, together with its width and height. The arrays only grow, so a
+ * table that is cleared and refilled with the same number of lines allocates nothing.
+ */
+final class LineTable {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  /**
+   * the number of valid lines
+   */
+  int count;
+
+  /**
+   * index of the first item of each line
+   */
+  int[] start = new int[INITIAL_CAPACITY];
+
+  /**
+   * index after the last item of each line
+   */
+  int[] end = new int[INITIAL_CAPACITY];
+
+  /**
+   * sum of the item widths of each line
+   */
+  int[] width = new int[INITIAL_CAPACITY];
+
+  /**
+   * height of the highest item of each line
+   */
+  int[] height = new int[INITIAL_CAPACITY];
+
+  /**
+   * lines [keptFrom, keptTo) were copied from the old lines by the last
+   * {@link #rebreakLines(int[], int[], int, int, int, int, int, LineTable)}
+   */
+  int keptFrom;
+
+  int keptTo;
+
+  void clear() {
+    count = 0;
+  }
+
+  /**
+   * @return index after the last item placed in a line, 0 if the table is empty
+   */
+  int itemCount() {
+    return count == 0 ? 0 : end[count - 1];
+  }
+
+  /**
+   * greedily break items into lines of at most {@code available} width, an item wider than a
+   * line gets a line of its own
+   *
+   * @param widths   widths of the items, margins included
+   * @param heights  heights of the items, margins included
+   * @param size     number of valid items in the arrays
+   * @param maxLines max lines to keep, items after them are not placed, 0 for unlimited
+   */
+  void breakLines(int[] widths, int[] heights, int size, int available, int maxLines) {
+    count = 0;
+    int lineStart = 0;
+    int lineWidth = 0;
+    int lineHeight = 0;
+    for (int i = 0; i < size; i++) {
+      int itemWidth = widths[i];
+      if (i > lineStart && lineWidth + itemWidth > available) {
+        add(lineStart, i, lineWidth, lineHeight);
+        if (maxLines > 0 && count >= maxLines) {
+          return;
+        }
+        lineStart = i;
+        lineWidth = 0;
+        lineHeight = 0;
+      }
+      lineWidth += itemWidth;
+      lineHeight = Math.max(lineHeight, heights[i]);
+    }
+    if (size > lineStart) {
+      add(lineStart, size, lineWidth, lineHeight);
+    }
+  }
+
+  /**
+   * break lines again from {@code fromLine} after some items changed, the lines before it are
+   * kept. As soon as a new line starts on an unchanged item where an old line started, the old
+   * lines from there on are the same and are copied instead of being broken again.
+   *
+   * @param fromLine   first line to break again, must be one of the current lines
+   * @param stableFrom items from this index on are unchanged, {@code size} if items were added
+   *                   or removed
+   * @param old        copy of the lines from {@code fromLine} on, before the change
+   */
+  void rebreakLines(int[] widths, int[] heights, int size, int available, int maxLines,
+                    int fromLine, int stableFrom, LineTable old) {
+    count = fromLine;
+    keptFrom = 0;
+    keptTo = 0;
+    int oldLine = fromLine;
+    int lineStart = old.start[fromLine];
+    int lineWidth = 0;
+    int lineHeight = 0;
+    int i = lineStart;
+    while (i < size) {
+      int itemWidth = widths[i];
+      if (i > lineStart && lineWidth + itemWidth > available) {
+        add(lineStart, i, lineWidth, lineHeight);
+        if (maxLines > 0 && count >= maxLines) {
+          return;
+        }
+        lineStart = i;
+        lineWidth = 0;
+        lineHeight = 0;
+        if (i >= stableFrom) {
+          while (oldLine < old.count && old.start[oldLine] < i) {
+            oldLine++;
+          }
+          if (oldLine < old.count && old.start[oldLine] == i) {
+            keptFrom = count;
+            for (; oldLine < old.count && (maxLines <= 0 || count < maxLines); oldLine++) {
+              add(old.start[oldLine], old.end[oldLine], old.width[oldLine], old.height[oldLine]);
+            }
+            keptTo = count;
+            if (maxLines > 0 && count >= maxLines) {
+              return;
+            }
+            // the old lines may have stopped at max lines, go on after them
+            i = end[count - 1];
+            lineStart = i;
+            stableFrom = Integer.MAX_VALUE;
+            continue;
+          }
+        }
+      }
+      lineWidth += itemWidth;
+      lineHeight = Math.max(lineHeight, heights[i]);
+      i++;
+    }
+    if (size > lineStart) {
+      add(lineStart, size, lineWidth, lineHeight);
+    }
+  }
+
+  /**
+   * copy the lines of {@code src} from {@code from} on, they keep their index
+   */
+  void copyFrom(LineTable src, int from) {
+    if (start.length < src.count) {
+      start = grow(start, src.count);
+      end = grow(end, src.count);
+      width = grow(width, src.count);
+      height = grow(height, src.count);
+    }
+    int length = src.count - from;
+    System.arraycopy(src.start, from, start, from, length);
+    System.arraycopy(src.end, from, end, from, length);
+    System.arraycopy(src.width, from, width, from, length);
+    System.arraycopy(src.height, from, height, from, length);
+    count = src.count;
+  }
+
+  /**
+   * @return the line holding {@code item}, the lines must not be empty
+   */
+  int lineOf(int item) {
+    int low = 0;
+    int high = count - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (start[mid] <= item) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  void add(int lineStart, int lineEnd, int lineWidth, int lineHeight) {
+    if (count == start.length) {
+      int capacity = count * 2;
+      start = grow(start, capacity);
+      end = grow(end, capacity);
+      width = grow(width, capacity);
+      height = grow(height, capacity);
+    }
+    start[count] = lineStart;
+    end[count] = lineEnd;
+    width[count] = lineWidth;
+    height[count] = lineHeight;
+    count++;
+  }
+
+  /**
+   * @return the sum of the line heights plus {@code linePadding} between two lines
+   */
+  int contentHeight(int linePadding) {
+    int total = 0;
+    for (int i = 0; i < count; i++) {
+      total += height[i];
+    }
+    return count > 1 ? total + linePadding * (count - 1) : total;
+  }
+
+  /**
+   * @return {@code array} if it already holds {@code capacity} ints, otherwise a larger copy
+   */
+  static int[] grow(int[] array, int capacity) {
+    if (array.length >= capacity) {
+      return array;
+    }
+    int[] newArray = new int[Math.max(capacity, array.length * 2)];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    return newArray;
+  }
+
+  /**
+   * @see #grow(int[], int)
+   */
+  static long[] grow(long[] array, int capacity) {
+    if (array.length >= capacity) {
+      return array;
+    }
+    long[] newArray = new long[Math.max(capacity, array.length * 2)];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    return newArray;
+  }
+}
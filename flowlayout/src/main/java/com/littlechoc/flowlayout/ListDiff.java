@@ -0,0 +1,424 @@
+package com.littlechoc.flowlayout;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ListDiff
+ * <p/>
+ * The updates turning one list into another, computed without any Android class so it can run on
+ * a background thread. Items kept in place are the longest common subsequence found by the linear
+ * space Myers algorithm, an item removed and inserted again elsewhere is dispatched as a move.
+ * Moved items are paired through a hash index of their ids when the item callback gives them,
+ * otherwise with a few comparisons per item, and the items left unpaired are removed and inserted
+ * again.
+ * <p/>
+ * Updates are dispatched in an order where every position is valid for the adapter once it
+ * already holds the new list: removals first, from the end, then the new list is built from the
+ * start with inserts and moves, then the items whose content changed are rebound at their new
+ * position.
+ */
+final class ListDiff {
+
+  /**
+   * receives the updates of a diff
+   */
+  interface UpdateCallback {
+
+    void onInserted(int position, int count);
+
+    void onRemoved(int position, int count);
+
+    void onMoved(int fromPosition, int toPosition);
+
+    void onChanged(int position, int count);
+  }
+
+  private static final int INSERT = 0;
+  private static final int REMOVE = 1;
+  private static final int MOVE = 2;
+  private static final int CHANGE = 3;
+
+  /**
+   * {@link ListFlowLayoutAdapter.ItemCallback#areItemsTheSame(Object, Object)} calls spent on
+   * pairing the moved items without id, per unpaired item
+   */
+  static final int MOVE_CHECKS_PER_ITEM = 8;
+
+  /**
+   * the updates as (type, first argument, second argument) triples
+   */
+  private int[] mUpdates = new int[3 * 8];
+
+  private int mUpdateCount;
+
+  private ListDiff() {
+  }
+
+  /**
+   * @return the updates turning {@code oldList} into {@code newList}
+   */
+  static <T> ListDiff diff(List<T> oldList, List<T> newList,
+                           ListFlowLayoutAdapter.ItemCallback<T> callback) {
+    int oldSize = oldList.size();
+    int newSize = newList.size();
+
+    // old index of every new item, -1 for inserted items, and the other way around
+    int[] newToOld = new int[newSize];
+    int[] oldToNew = new int[oldSize];
+    Arrays.fill(newToOld, -1);
+    Arrays.fill(oldToNew, -1);
+    commonSubsequence(oldList, newList, callback, oldToNew, newToOld);
+
+    pairMoves(oldList, newList, callback, oldToNew, newToOld);
+
+    ListDiff diff = new ListDiff();
+    diff.build(oldToNew, newToOld);
+    for (int j = 0; j < newSize; j++) {
+      int start = j;
+      while (j < newSize && newToOld[j] != -1
+          && !callback.areContentsTheSame(oldList.get(newToOld[j]), newList.get(j))) {
+        j++;
+      }
+      if (j > start) {
+        diff.add(CHANGE, start, j - start);
+      }
+    }
+    return diff;
+  }
+
+  /**
+   * pair the items out of the common subsequence which are found on both sides, they moved
+   */
+  private static <T> void pairMoves(List<T> oldList, List<T> newList,
+                                    ListFlowLayoutAdapter.ItemCallback<T> callback,
+                                    int[] oldToNew, int[] newToOld) {
+    int oldSize = oldList.size();
+    int newSize = newList.size();
+    long[] oldIds = new long[oldSize];
+    // unpaired old items by id, chained by increasing index through next
+    Map<Long, Integer> firstOfId = new HashMap<>();
+    int[] next = new int[oldSize];
+    int unpaired = 0;
+    for (int i = oldSize - 1; i >= 0; i--) {
+      if (oldToNew[i] != -1) {
+        continue;
+      }
+      unpaired++;
+      oldIds[i] = callback.getItemId(oldList.get(i));
+      if (oldIds[i] != FlowLayoutAdapter.NO_ID) {
+        Integer first = firstOfId.put(oldIds[i], i);
+        next[i] = first != null ? first : -1;
+      }
+    }
+    if (unpaired == 0) {
+      return;
+    }
+
+    // items without id are compared to each other, within a budget
+    int withoutId = 0;
+    for (int j = 0; j < newSize; j++) {
+      if (newToOld[j] != -1) {
+        continue;
+      }
+      unpaired++;
+      T item = newList.get(j);
+      long id = callback.getItemId(item);
+      if (id == FlowLayoutAdapter.NO_ID) {
+        withoutId++;
+        continue;
+      }
+      Integer first = firstOfId.get(id);
+      for (int i = first != null ? first : -1; i != -1; i = next[i]) {
+        if (oldToNew[i] == -1 && callback.areItemsTheSame(oldList.get(i), item)) {
+          oldToNew[i] = j;
+          newToOld[j] = i;
+          break;
+        }
+      }
+    }
+    long budget = (long) MOVE_CHECKS_PER_ITEM * unpaired;
+    for (int j = 0; j < newSize && withoutId > 0 && budget > 0; j++) {
+      if (newToOld[j] != -1) {
+        continue;
+      }
+      T item = newList.get(j);
+      if (callback.getItemId(item) != FlowLayoutAdapter.NO_ID) {
+        continue;
+      }
+      withoutId--;
+      for (int i = 0; i < oldSize && budget > 0; i++) {
+        if (oldToNew[i] != -1 || oldIds[i] != FlowLayoutAdapter.NO_ID) {
+          continue;
+        }
+        budget--;
+        if (callback.areItemsTheSame(oldList.get(i), item)) {
+          oldToNew[i] = j;
+          newToOld[j] = i;
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * match the items of the longest common subsequence of both lists
+   *
+   * @param oldToNew receives the new index of every matched old item, must be filled with -1
+   * @param newToOld receives the old index of every matched new item, must be filled with -1
+   */
+  static <T> void commonSubsequence(List<T> oldList, List<T> newList,
+                                    ListFlowLayoutAdapter.ItemCallback<T> callback,
+                                    int[] oldToNew, int[] newToOld) {
+    new Myers<>(oldList, newList, callback).run(oldToNew, newToOld);
+  }
+
+  /**
+   * simulate the updates on the old positions to find where every one applies
+   */
+  private void build(int[] oldToNew, int[] newToOld) {
+    int oldSize = oldToNew.length;
+    int newSize = newToOld.length;
+
+    // removals from the end, so earlier positions stay valid
+    for (int i = oldSize - 1; i >= 0; i--) {
+      if (oldToNew[i] != -1) {
+        continue;
+      }
+      int end = i + 1;
+      while (i > 0 && oldToNew[i - 1] == -1) {
+        i--;
+      }
+      add(REMOVE, i, end - i);
+    }
+
+    // what is left, by old index, then build the new list from its start: the positions before
+    // the one being filled already hold the new items
+    int[] current = new int[Math.max(oldSize, newSize)];
+    int size = 0;
+    for (int i = 0; i < oldSize; i++) {
+      if (oldToNew[i] != -1) {
+        current[size++] = i;
+      }
+    }
+    for (int j = 0; j < newSize; j++) {
+      int old = newToOld[j];
+      if (old == -1) {
+        int start = j;
+        while (j + 1 < newSize && newToOld[j + 1] == -1) {
+          j++;
+        }
+        int count = j - start + 1;
+        System.arraycopy(current, start, current, start + count, size - start);
+        Arrays.fill(current, start, start + count, -1);
+        size += count;
+        add(INSERT, start, count);
+        continue;
+      }
+      int from = j;
+      while (current[from] != old) {
+        from++;
+      }
+      if (from != j) {
+        System.arraycopy(current, j, current, j + 1, from - j);
+        current[j] = old;
+        add(MOVE, from, j);
+      }
+    }
+  }
+
+  private void add(int type, int a, int b) {
+    if (mUpdateCount * 3 == mUpdates.length) {
+      mUpdates = Arrays.copyOf(mUpdates, mUpdates.length * 2);
+    }
+    int index = mUpdateCount * 3;
+    mUpdates[index] = type;
+    mUpdates[index + 1] = a;
+    mUpdates[index + 2] = b;
+    mUpdateCount++;
+  }
+
+  int getUpdateCount() {
+    return mUpdateCount;
+  }
+
+  void dispatchTo(UpdateCallback callback) {
+    for (int k = 0; k < mUpdateCount; k++) {
+      int a = mUpdates[k * 3 + 1];
+      int b = mUpdates[k * 3 + 2];
+      switch (mUpdates[k * 3]) {
+        case INSERT:
+          callback.onInserted(a, b);
+          break;
+        case REMOVE:
+          callback.onRemoved(a, b);
+          break;
+        case MOVE:
+          callback.onMoved(a, b);
+          break;
+        default:
+          callback.onChanged(a, b);
+          break;
+      }
+    }
+  }
+
+  /**
+   * the longest common subsequence of two lists, by the divide and conquer variant of Myers'
+   * algorithm which looks for the middle snake of every range and needs O(N + M) space
+   */
+  private static class Myers<T> {
+
+    private final List<T> mOld;
+    private final List<T> mNew;
+    private final ListFlowLayoutAdapter.ItemCallback<T> mCallback;
+
+    /**
+     * furthest x reached on every diagonal, forward and backward, offset by {@link #mOffset}
+     */
+    private final int[] mForward;
+    private final int[] mBackward;
+    private final int mOffset;
+
+    Myers(List<T> oldList, List<T> newList, ListFlowLayoutAdapter.ItemCallback<T> callback) {
+      mOld = oldList;
+      mNew = newList;
+      mCallback = callback;
+      mOffset = oldList.size() + newList.size() + 1;
+      mForward = new int[mOffset * 2 + 2];
+      mBackward = new int[mOffset * 2 + 2];
+    }
+
+    void run(int[] oldToNew, int[] newToOld) {
+      // ranges left to split, as (old start, old end, new start, new end)
+      int[] stack = new int[4 * 16];
+      int top = 0;
+      stack[top++] = 0;
+      stack[top++] = mOld.size();
+      stack[top++] = 0;
+      stack[top++] = mNew.size();
+      int[] split = new int[8];
+      while (top > 0) {
+        int newEnd = stack[--top];
+        int newStart = stack[--top];
+        int oldEnd = stack[--top];
+        int oldStart = stack[--top];
+        if (oldEnd == oldStart || newEnd == newStart) {
+          continue;
+        }
+        middleSnake(oldStart, oldEnd, newStart, newEnd, split);
+        for (int x = split[2], y = split[3]; x < split[4]; x++, y++) {
+          oldToNew[x] = y;
+          newToOld[y] = x;
+        }
+        if (top + 8 > stack.length) {
+          stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top++] = oldStart;
+        stack[top++] = split[0];
+        stack[top++] = newStart;
+        stack[top++] = split[1];
+        stack[top++] = split[6];
+        stack[top++] = oldEnd;
+        stack[top++] = split[7];
+        stack[top++] = newEnd;
+      }
+    }
+
+    private boolean same(int oldIndex, int newIndex) {
+      return mCallback.areItemsTheSame(mOld.get(oldIndex), mNew.get(newIndex));
+    }
+
+    /**
+     * find the middle snake of a non empty range, the edit leading to it is left out of both
+     * sides so that they are always smaller than the range
+     *
+     * @param out receives the absolute end of the part before the snake, the start and the end of
+     *            the snake, then the start of the part after it, as (x, y) pairs
+     */
+    private void middleSnake(int oldStart, int oldEnd, int newStart, int newEnd, int[] out) {
+      int n = oldEnd - oldStart;
+      int m = newEnd - newStart;
+      int delta = n - m;
+      boolean odd = (delta & 1) != 0;
+      int offset = mOffset;
+      int[] forward = mForward;
+      int[] backward = mBackward;
+      forward[offset + 1] = 0;
+      backward[offset + 1] = 0;
+      int max = (n + m + 1) / 2;
+      for (int d = 0; d <= max; d++) {
+        for (int k = -d; k <= d; k += 2) {
+          int x;
+          int previousX;
+          int previousY;
+          if (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])) {
+            x = forward[offset + k + 1];
+            previousX = x;
+            previousY = d == 0 ? 0 : x - k - 1;
+          } else {
+            x = forward[offset + k - 1] + 1;
+            previousX = x - 1;
+            previousY = x - k;
+          }
+          int y = x - k;
+          int startX = x;
+          int startY = y;
+          while (x < n && y < m && same(oldStart + x, newStart + y)) {
+            x++;
+            y++;
+          }
+          forward[offset + k] = x;
+          int reverse = delta - k;
+          if (odd && reverse >= -(d - 1) && reverse <= d - 1
+              && x + backward[offset + reverse] >= n) {
+            set(out, 0, oldStart + previousX, newStart + previousY);
+            set(out, 2, oldStart + startX, newStart + startY);
+            set(out, 4, oldStart + x, newStart + y);
+            set(out, 6, oldStart + x, newStart + y);
+            return;
+          }
+        }
+        for (int k = -d; k <= d; k += 2) {
+          int x;
+          int previousX;
+          int previousY;
+          if (k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])) {
+            x = backward[offset + k + 1];
+            previousX = x;
+            previousY = d == 0 ? 0 : x - k - 1;
+          } else {
+            x = backward[offset + k - 1] + 1;
+            previousX = x - 1;
+            previousY = x - k;
+          }
+          int y = x - k;
+          int startX = x;
+          int startY = y;
+          while (x < n && y < m && same(oldEnd - 1 - x, newEnd - 1 - y)) {
+            x++;
+            y++;
+          }
+          backward[offset + k] = x;
+          int forwardK = delta - k;
+          if (!odd && forwardK >= -d && forwardK <= d && forward[offset + forwardK] + x >= n) {
+            // backward coordinates count from the end of the range
+            set(out, 0, oldEnd - x, newEnd - y);
+            set(out, 2, oldEnd - x, newEnd - y);
+            set(out, 4, oldEnd - startX, newEnd - startY);
+            set(out, 6, oldEnd - previousX, newEnd - previousY);
+            return;
+          }
+        }
+      }
+      throw new IllegalStateException("no middle snake, are the item callbacks consistent?");
+    }
+
+    private static void set(int[] out, int index, int x, int y) {
+      out[index] = x;
+      out[index + 1] = y;
+    }
+  }
+}
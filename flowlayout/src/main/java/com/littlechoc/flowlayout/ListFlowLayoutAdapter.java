@@ -0,0 +1,188 @@
+package com.littlechoc.flowlayout;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * ListFlowLayoutAdapter
+ * <p/>
+ * An adapter backed by a list which is replaced as a whole with {@link #submitList(List)}. The
+ * differences between the current list and the submitted one are computed on a background
+ * executor, then only the inserted, removed, moved and changed items are notified on the main
+ * thread, in a single batch.
+ *
+ * @param <T> type of the items
+ */
+public abstract class ListFlowLayoutAdapter<T> extends FlowLayoutAdapter {
+
+  private static ExecutorService sDiffExecutor;
+
+  private final ItemCallback<T> mItemCallback;
+
+  private final Executor mDiffExecutor;
+
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+  private List<T> mList = Collections.emptyList();
+
+  /**
+   * increased by every submitted list, a diff finished for an older list is dropped
+   */
+  private int mGeneration;
+
+  public ListFlowLayoutAdapter(ItemCallback<T> itemCallback) {
+    this(itemCallback, null);
+  }
+
+  /**
+   * @param diffExecutor executor computing the differences, null for a single background thread
+   *                     shared by every adapter
+   */
+  public ListFlowLayoutAdapter(ItemCallback<T> itemCallback, Executor diffExecutor) {
+    mItemCallback = itemCallback;
+    mDiffExecutor = diffExecutor != null ? diffExecutor : getDefaultDiffExecutor();
+  }
+
+  private static synchronized Executor getDefaultDiffExecutor() {
+    if (sDiffExecutor == null) {
+      sDiffExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "FlowLayout diff");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return sDiffExecutor;
+  }
+
+  @Override
+  public int getCount() {
+    return mList.size();
+  }
+
+  @Override
+  public T getItem(int position) {
+    return mList.get(position);
+  }
+
+  /**
+   * @return the list the adapter currently shows, a submitted list only replaces it once its
+   * differences are computed
+   */
+  public List<T> getCurrentList() {
+    return mList;
+  }
+
+  /**
+   * replace the list, must be called on the main thread. The list is copied, later changes to
+   * it are not seen by the adapter.
+   *
+   * @param list the new items, null for none
+   */
+  public void submitList(List<T> list) {
+    final int generation = ++mGeneration;
+    if (list == null || list.isEmpty()) {
+      int count = mList.size();
+      mList = Collections.emptyList();
+      if (count > 0) {
+        notifyItemRangeRemoved(0, count);
+      }
+      return;
+    }
+    final List<T> newList = Collections.unmodifiableList(new ArrayList<>(list));
+    if (mList.isEmpty()) {
+      mList = newList;
+      notifyItemRangeInserted(0, newList.size());
+      return;
+    }
+
+    final List<T> oldList = mList;
+    mDiffExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        final ListDiff diff = ListDiff.diff(oldList, newList, mItemCallback);
+        mMainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (generation != mGeneration) {
+              // a newer list was submitted in the meantime
+              return;
+            }
+            mList = newList;
+            dispatch(diff);
+          }
+        });
+      }
+    });
+  }
+
+  private void dispatch(ListDiff diff) {
+    beginBatch();
+    diff.dispatchTo(new ListDiff.UpdateCallback() {
+      @Override
+      public void onInserted(int position, int count) {
+        notifyItemRangeInserted(position, count);
+      }
+
+      @Override
+      public void onRemoved(int position, int count) {
+        notifyItemRangeRemoved(position, count);
+      }
+
+      @Override
+      public void onMoved(int fromPosition, int toPosition) {
+        notifyItemMoved(fromPosition, toPosition);
+      }
+
+      @Override
+      public void onChanged(int position, int count) {
+        notifyItemRangeChanged(position, count);
+      }
+    });
+    endBatch();
+  }
+
+  /**
+   * ItemCallback
+   * <p/>
+   * tells items apart when diffing two lists, called on the diff executor
+   *
+   * @param <T> type of the items
+   */
+  public static abstract class ItemCallback<T> {
+
+    /**
+     * @return true if both items stand for the same thing, e.g. they have the same id
+     */
+    public abstract boolean areItemsTheSame(T oldItem, T newItem);
+
+    /**
+     * called for the same items only
+     *
+     * @return true if the item looks the same, false to rebind its view
+     */
+    public abstract boolean areContentsTheSame(T oldItem, T newItem);
+
+    /**
+     * an id for the diff to find the moved items through a hash index. Without ids, moved items
+     * are looked for with a few {@link #areItemsTheSame(Object, Object)} calls each, and those
+     * not found are removed and inserted again.
+     *
+     * @return the id of {@code item}, the same for the same items, or
+     * {@link FlowLayoutAdapter#NO_ID}
+     */
+    public long getItemId(T item) {
+      return NO_ID;
+    }
+  }
+}
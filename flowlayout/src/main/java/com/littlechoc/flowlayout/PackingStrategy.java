@@ -0,0 +1,403 @@
+package com.littlechoc.flowlayout;
+
+import java.util.Arrays;
+
+/**
+ * PackingStrategy
+ * <p/>
+ * Reorders items to fill lines of a fixed width with as few lines as possible, a bin packing
+ * problem. Items are packed by width only, an item wider than a line gets a line of its own.
+ * Lines keep the items in their original order and are sorted by their first item, so a packed
+ * layout stays as close as possible to the adapter order.
+ * <p/>
+ * Strategies hold no state and can be shared between layouts and threads, the arrays a pack works
+ * in are kept by the caller in a {@link Scratch}.
+ */
+public abstract class PackingStrategy {
+
+  /**
+   * put every item, widest first, in the first line with enough room, O(n log n)
+   */
+  public static final PackingStrategy FIRST_FIT_DECREASING = new FirstFitDecreasing();
+
+  /**
+   * put every item, widest first, in the fullest line with enough room, O(n log n) searches
+   */
+  public static final PackingStrategy BEST_FIT_DECREASING = new BestFitDecreasing();
+
+  /**
+   * max items searched by {@link #exact(long)}, bigger inputs keep the first fit decreasing result
+   */
+  static final int EXACT_MAX_ITEMS = 512;
+
+  /**
+   * search the packing with the fewest lines, starting from the first fit decreasing result and
+   * giving up with the best packing found so far once the budget is spent
+   *
+   * @param timeBudgetNanos max time spent searching for each pack
+   */
+  public static PackingStrategy exact(long timeBudgetNanos) {
+    return new Exact(timeBudgetNanos);
+  }
+
+  /**
+   * pack items into lines of {@code capacity} width, in work arrays allocated for this call
+   *
+   * @see #pack(int[], int, int, int[], Scratch)
+   */
+  public final int pack(int[] widths, int count, int capacity, int[] outOrder) {
+    return pack(widths, count, capacity, outOrder, new Scratch());
+  }
+
+  /**
+   * pack items into lines of {@code capacity} width
+   *
+   * @param widths   widths of the items
+   * @param count    number of valid items in {@code widths}
+   * @param capacity width of a line
+   * @param outOrder receives the item indexes line after line, at least {@code count} long
+   * @param scratch  the work arrays, reused by packs of at most as many items
+   * @return the number of lines
+   */
+  public final int pack(int[] widths, int count, int capacity, int[] outOrder, Scratch scratch) {
+    if (count == 0) {
+      return 0;
+    }
+    if (capacity <= 0) {
+      for (int i = 0; i < count; i++) {
+        outOrder[i] = i;
+      }
+      return count;
+    }
+    scratch.ensureCapacity(count);
+    sortDecreasing(widths, count, capacity, scratch);
+    int binCount = assign(widths, count, capacity, scratch.sorted, scratch.bins, scratch);
+    order(scratch.bins, count, binCount, outOrder, scratch);
+    return binCount;
+  }
+
+  /**
+   * assign every item to a line
+   *
+   * @param sorted  the item indexes, widest first
+   * @param outBins receives the line of every item
+   * @return the number of lines
+   */
+  abstract int assign(int[] widths, int count, int capacity, int[] sorted, int[] outBins,
+                      Scratch scratch);
+
+  static int clamp(int width, int capacity) {
+    return width > capacity ? capacity : width;
+  }
+
+  /**
+   * write into {@code scratch.sorted} the item indexes sorted by decreasing width, equal widths
+   * keep their order
+   */
+  static void sortDecreasing(int[] widths, int count, int capacity, Scratch scratch) {
+    long[] keys = scratch.keys;
+    for (int i = 0; i < count; i++) {
+      keys[i] = ((long) (capacity - clamp(widths[i], capacity)) << 32) | i;
+    }
+    heapSort(keys, count);
+    int[] sorted = scratch.sorted;
+    for (int i = 0; i < count; i++) {
+      sorted[i] = (int) keys[i];
+    }
+  }
+
+  /**
+   * sort the first {@code count} keys in place, unlike {@link Arrays#sort(long[])} which merges
+   * partly sorted arrays through a new buffer
+   */
+  static void heapSort(long[] keys, int count) {
+    for (int i = count / 2 - 1; i >= 0; i--) {
+      siftDown(keys, i, count);
+    }
+    for (int end = count - 1; end > 0; end--) {
+      long max = keys[0];
+      keys[0] = keys[end];
+      keys[end] = max;
+      siftDown(keys, 0, end);
+    }
+  }
+
+  private static void siftDown(long[] keys, int node, int count) {
+    long key = keys[node];
+    int child;
+    while ((child = node * 2 + 1) < count) {
+      if (child + 1 < count && keys[child + 1] > keys[child]) {
+        child++;
+      }
+      if (keys[child] <= key) {
+        break;
+      }
+      keys[node] = keys[child];
+      node = child;
+    }
+    keys[node] = key;
+  }
+
+  /**
+   * write the items line after line, lines sorted by their first item
+   */
+  private static void order(int[] bins, int count, int binCount, int[] outOrder,
+                            Scratch scratch) {
+    int[] rank = scratch.rank;
+    Arrays.fill(rank, 0, binCount, -1);
+    int[] offset = scratch.offset;
+    Arrays.fill(offset, 0, binCount + 1, 0);
+    int ranks = 0;
+    for (int i = 0; i < count; i++) {
+      int bin = bins[i];
+      if (rank[bin] == -1) {
+        rank[bin] = ranks++;
+      }
+      offset[rank[bin] + 1]++;
+    }
+    for (int i = 0; i < binCount; i++) {
+      offset[i + 1] += offset[i];
+    }
+    for (int i = 0; i < count; i++) {
+      outOrder[offset[rank[bins[i]]]++] = i;
+    }
+  }
+
+  private static class FirstFitDecreasing extends PackingStrategy {
+
+    @Override
+    int assign(int[] widths, int count, int capacity, int[] sorted, int[] outBins,
+               Scratch scratch) {
+      // max tree over the room left in every line, unopened lines are empty so the leftmost
+      // line with enough room is either an open one or the next one to open
+      int size = 1;
+      while (size < count) {
+        size <<= 1;
+      }
+      int[] tree = scratch.tree = LineTable.grow(scratch.tree, size * 2);
+      Arrays.fill(tree, size, size + count, capacity);
+      Arrays.fill(tree, size + count, size * 2, 0);
+      for (int i = size - 1; i > 0; i--) {
+        tree[i] = Math.max(tree[i * 2], tree[i * 2 + 1]);
+      }
+      int binCount = 0;
+      for (int k = 0; k < count; k++) {
+        int item = sorted[k];
+        int width = clamp(widths[item], capacity);
+        int node = 1;
+        while (node < size) {
+          node = tree[node * 2] >= width ? node * 2 : node * 2 + 1;
+        }
+        int bin = node - size;
+        outBins[item] = bin;
+        binCount = Math.max(binCount, bin + 1);
+        tree[node] -= width;
+        for (node >>= 1; node > 0; node >>= 1) {
+          tree[node] = Math.max(tree[node * 2], tree[node * 2 + 1]);
+        }
+      }
+      return binCount;
+    }
+  }
+
+  private static class BestFitDecreasing extends PackingStrategy {
+
+    @Override
+    int assign(int[] widths, int count, int capacity, int[] sorted, int[] outBins,
+               Scratch scratch) {
+      // open lines sorted by the room left in them, as (room << 32 | line)
+      long[] open = scratch.open;
+      int openCount = 0;
+      int binCount = 0;
+      for (int k = 0; k < count; k++) {
+        int item = sorted[k];
+        int width = clamp(widths[item], capacity);
+        int index = Arrays.binarySearch(open, 0, openCount, (long) width << 32);
+        if (index < 0) {
+          index = -index - 1;
+        }
+        int bin;
+        int room;
+        if (index < openCount) {
+          bin = (int) open[index];
+          room = (int) (open[index] >>> 32) - width;
+          System.arraycopy(open, index + 1, open, index, openCount - index - 1);
+          openCount--;
+        } else {
+          bin = binCount++;
+          room = capacity - width;
+        }
+        outBins[item] = bin;
+        long key = ((long) room << 32) | bin;
+        int insert = Arrays.binarySearch(open, 0, openCount, key);
+        insert = insert < 0 ? -insert - 1 : insert;
+        System.arraycopy(open, insert, open, insert + 1, openCount - insert);
+        open[insert] = key;
+        openCount++;
+      }
+      return binCount;
+    }
+  }
+
+  private static class Exact extends PackingStrategy {
+
+    private final long mTimeBudgetNanos;
+
+    Exact(long timeBudgetNanos) {
+      mTimeBudgetNanos = timeBudgetNanos;
+    }
+
+    @Override
+    int assign(int[] widths, int count, int capacity, int[] sorted, int[] outBins,
+               Scratch scratch) {
+      int binCount = FIRST_FIT_DECREASING.assign(widths, count, capacity, sorted, outBins,
+          scratch);
+      if (count > EXACT_MAX_ITEMS) {
+        return binCount;
+      }
+      if (scratch.search == null) {
+        scratch.search = new Search();
+      }
+      Search search = scratch.search;
+      search.reset(count, capacity, System.nanoTime() + mTimeBudgetNanos);
+      long total = 0;
+      for (int k = 0; k < count; k++) {
+        search.widths[k] = clamp(widths[sorted[k]], capacity);
+        total += search.widths[k];
+      }
+      int lowerBound = (int) ((total + capacity - 1) / capacity);
+
+      while (binCount > lowerBound && search.fit(binCount - 1)) {
+        binCount--;
+        for (int k = 0; k < count; k++) {
+          outBins[sorted[k]] = search.bins[k];
+        }
+      }
+      return binCount;
+    }
+
+    /**
+     * depth first search placing the items, widest first, into a fixed number of lines, kept in
+     * a {@link Scratch} with its arrays
+     */
+    private static class Search {
+
+      int[] widths = new int[0];
+      int[] bins = new int[0];
+      int[] room = new int[0];
+      int count;
+      int lines;
+      int capacity;
+      long deadline;
+      int nodes;
+      boolean timeout;
+
+      /**
+       * start a search over {@code count} items, whose widths are then written into
+       * {@link #widths}
+       */
+      void reset(int count, int capacity, long deadline) {
+        widths = LineTable.grow(widths, count);
+        bins = LineTable.grow(bins, count);
+        room = LineTable.grow(room, count);
+        this.count = count;
+        this.capacity = capacity;
+        this.deadline = deadline;
+        nodes = 0;
+        timeout = false;
+      }
+
+      /**
+       * @return true if the items fit in {@code lines}, {@link #bins} then holds the placement
+       */
+      boolean fit(int lines) {
+        if (timeout) {
+          return false;
+        }
+        this.lines = lines;
+        Arrays.fill(room, 0, lines, capacity);
+        return place(0);
+      }
+
+      private boolean place(int k) {
+        if (k == count) {
+          return true;
+        }
+        if (++nodes % 1024 == 0 && System.nanoTime() > deadline) {
+          timeout = true;
+        }
+        if (timeout) {
+          return false;
+        }
+        int width = widths[k];
+        for (int bin = 0; bin < lines; bin++) {
+          if (room[bin] < width || sameRoomBefore(bin)) {
+            continue;
+          }
+          room[bin] -= width;
+          bins[k] = bin;
+          if (place(k + 1)) {
+            return true;
+          }
+          room[bin] += width;
+        }
+        return false;
+      }
+
+      /**
+       * lines with the same room left are interchangeable, only try the first of them
+       */
+      private boolean sameRoomBefore(int bin) {
+        for (int i = 0; i < bin; i++) {
+          if (room[i] == room[bin]) {
+            return true;
+          }
+        }
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Scratch
+   * <p/>
+   * The work arrays of a pack. They only grow, so packing again at most as many items allocates
+   * nothing. A scratch is used by one pack at a time.
+   */
+  public static final class Scratch {
+
+    int[] bins = new int[0];
+
+    int[] sorted = new int[0];
+
+    long[] keys = new long[0];
+
+    /**
+     * open lines of the best fit decreasing strategy
+     */
+    long[] open = new long[0];
+
+    int[] rank = new int[0];
+
+    int[] offset = new int[0];
+
+    /**
+     * max tree of the first fit decreasing strategy
+     */
+    int[] tree = new int[0];
+
+    /**
+     * created with the first exact pack
+     */
+    Exact.Search search;
+
+    void ensureCapacity(int count) {
+      bins = LineTable.grow(bins, count);
+      sorted = LineTable.grow(sorted, count);
+      keys = LineTable.grow(keys, count);
+      open = LineTable.grow(open, count);
+      rank = LineTable.grow(rank, count);
+      offset = LineTable.grow(offset, count + 1);
+    }
+  }
+}
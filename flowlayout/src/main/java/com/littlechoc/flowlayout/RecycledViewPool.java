@@ -0,0 +1,76 @@
+package com.littlechoc.flowlayout;
+
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * RecycledViewPool
+ * <p/>
+ * Per view type scrap heap of detached views. FlowLayout fills it when children are removed or
+ * replaced and hands its views to the adapter as convert views. One pool can be shared between
+ * several FlowLayouts whose adapters use the same view types.
+ */
+public class RecycledViewPool {
+
+  /**
+   * default max views kept for each view type
+   */
+  public static final int DEFAULT_MAX_SCRAP = 16;
+
+  private SparseArray<ArrayList<View>> mScrap = new SparseArray<>();
+
+  private SparseIntArray mMaxScrap = new SparseIntArray();
+
+  /**
+   * set the max views kept for {@code viewType}, extra views are dropped
+   */
+  public void setMaxRecycledViews(int viewType, int max) {
+    mMaxScrap.put(viewType, max);
+    ArrayList<View> scrap = mScrap.get(viewType);
+    if (scrap != null) {
+      while (scrap.size() > max) {
+        scrap.remove(scrap.size() - 1);
+      }
+    }
+  }
+
+  /**
+   * @return a recycled view of {@code viewType} removed from the pool, or null if there is none
+   */
+  public View getRecycledView(int viewType) {
+    ArrayList<View> scrap = mScrap.get(viewType);
+    if (scrap == null || scrap.isEmpty()) {
+      return null;
+    }
+    return scrap.remove(scrap.size() - 1);
+  }
+
+  /**
+   * keep a view which has been detached from its parent to be reused for {@code viewType}
+   */
+  public void putRecycledView(int viewType, View view) {
+    if (view.getParent() != null) {
+      throw new IllegalArgumentException("the view must be removed from its parent first");
+    }
+    ArrayList<View> scrap = mScrap.get(viewType);
+    if (scrap == null) {
+      scrap = new ArrayList<>();
+      mScrap.put(viewType, scrap);
+    }
+    if (scrap.size() < mMaxScrap.get(viewType, DEFAULT_MAX_SCRAP)) {
+      scrap.add(view);
+    }
+  }
+
+  public int getRecycledViewCount(int viewType) {
+    ArrayList<View> scrap = mScrap.get(viewType);
+    return scrap == null ? 0 : scrap.size();
+  }
+
+  public void clear() {
+    mScrap.clear();
+  }
+}
@@ -0,0 +1,485 @@
+package com.littlechoc.flowlayout;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+/**
+ * VirtualFlowLayout
+ * <p/>
+ * A flow layout for very large adapters, meant to be put in a vertical ScrollView. Lines are
+ * broken over every adapter position using the sizes of the items measured so far and an
+ * estimate for the others, but only the items of the lines intersecting the visible part of the
+ * layout are bound to child views. Views leaving the viewport go back to the
+ * {@link RecycledViewPool} and are rebound as the user scrolls.
+ * <p/>
+ * gravity: start, center, end, align
+ * <p/>
+ * linePadding
+ */
+public class VirtualFlowLayout extends ViewGroup {
+
+  private int mGravity;
+
+  private int mLinePadding;
+
+  private FlowLayoutAdapter mAdapter;
+
+  private AdapterDataSetObserver mDataSetObserver;
+
+  private RecycledViewPool mRecycledViewPool;
+
+  /**
+   * width and height of every adapter position, margins included, an estimate if
+   * {@link #mItemMeasured} is false for the position
+   */
+  private int[] mItemWidth = new int[0];
+
+  private int[] mItemHeight = new int[0];
+
+  private boolean[] mItemMeasured = new boolean[0];
+
+  private int mItemCount;
+
+  private long mMeasuredWidthSum;
+
+  private long mMeasuredHeightSum;
+
+  private int mMeasuredCount;
+
+  /**
+   * lines and positions of every adapter position, laid out in adapter order
+   */
+  private final FlowLayoutEngine mEngine = new FlowLayoutEngine();
+
+  private int mUsefulWidth;
+
+  /**
+   * adapter position of the first child, children always hold consecutive positions
+   */
+  private int mFirstPosition;
+
+  private final Rect mVisibleRect = new Rect();
+
+  private final ViewTreeObserver.OnScrollChangedListener mScrollListener =
+      new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+          if (mAdapter == null || isLayoutRequested()) {
+            return;
+          }
+          if (fillViewport()) {
+            requestLayout();
+          } else {
+            layoutChildren();
+            invalidate();
+          }
+        }
+      };
+
+  public VirtualFlowLayout(Context context) {
+    this(context, null);
+  }
+
+  public VirtualFlowLayout(Context context, AttributeSet attrs) {
+    this(context, attrs, 0);
+  }
+
+  public VirtualFlowLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+    super(context, attrs, defStyleAttr);
+    TypedArray mTypedArray = context.obtainStyledAttributes(attrs,
+        R.styleable.FlowLayout);
+    mLinePadding = mTypedArray.getDimensionPixelSize(
+        R.styleable.FlowLayout_fl_linePadding, 0);
+    mGravity = mTypedArray.getInt(R.styleable.FlowLayout_fl_gravity, FlowLayout.START);
+    mTypedArray.recycle();
+  }
+
+  public int getGravity() {
+    return mGravity;
+  }
+
+  public void setGravity(@FlowLayout.Gravity int gravity) {
+    this.mGravity = gravity;
+    requestLayout();
+  }
+
+  public int getLinePadding() {
+    return mLinePadding;
+  }
+
+  public void setLinePadding(int linePadding) {
+    this.mLinePadding = linePadding < 0 ? 0 : linePadding;
+    requestLayout();
+  }
+
+  public void setAdapter(FlowLayoutAdapter adapter) {
+    if (adapter == null) {
+      throw new IllegalArgumentException("");
+    }
+    if (mAdapter != null && mDataSetObserver != null) {
+      mAdapter.unregisterDataSetObserver(mDataSetObserver);
+    }
+    removeAllViews();
+
+    mAdapter = adapter;
+    mDataSetObserver = new AdapterDataSetObserver();
+    mAdapter.registerDataSetObserver(mDataSetObserver);
+    resetItemSizes();
+    requestLayout();
+  }
+
+  public FlowLayoutAdapter getAdapter() {
+    return mAdapter;
+  }
+
+  /**
+   * @see FlowLayout#setRecycledViewPool(RecycledViewPool)
+   */
+  public void setRecycledViewPool(RecycledViewPool pool) {
+    mRecycledViewPool = pool;
+  }
+
+  public RecycledViewPool getRecycledViewPool() {
+    if (mRecycledViewPool == null) {
+      mRecycledViewPool = new RecycledViewPool();
+    }
+    return mRecycledViewPool;
+  }
+
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    getViewTreeObserver().addOnScrollChangedListener(mScrollListener);
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    getViewTreeObserver().removeOnScrollChangedListener(mScrollListener);
+    super.onDetachedFromWindow();
+  }
+
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+    int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+    int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+
+    mUsefulWidth = widthSize - getPaddingLeft() - getPaddingRight();
+    if (mAdapter != null) {
+      ensureItemSizes();
+      computeLines();
+      // estimates replaced by real sizes move the breaks, settle them with a few more passes
+      for (int i = 0; i < 3 && fillViewport(); i++) {
+        computeLines();
+      }
+    }
+
+    int contentHeight = mAdapter == null ? 0 : mEngine.getContentHeight();
+    setMeasuredDimension(
+        widthSize,
+        heightMode == MeasureSpec.EXACTLY ? heightSize
+            : getPaddingTop() + contentHeight + getPaddingBottom()
+    );
+  }
+
+  @Override
+  protected void onLayout(boolean changed, int l, int t, int r, int b) {
+    layoutChildren();
+  }
+
+  /**
+   * bind the lines intersecting the visible part of this layout and recycle the rest
+   *
+   * @return true if a newly bound item measured differently from the size the lines were
+   * broken with
+   */
+  private boolean fillViewport() {
+    if (mEngine.getLineCount() == 0) {
+      recycleChildren(0, getChildCount());
+      return false;
+    }
+    int viewTop;
+    int viewBottom;
+    if (getLocalVisibleRect(mVisibleRect)) {
+      // keep half a screen bound above and below to absorb small scrolls
+      int overscan = mVisibleRect.height() / 2;
+      viewTop = mVisibleRect.top - overscan;
+      viewBottom = mVisibleRect.bottom + overscan;
+    } else {
+      viewTop = 0;
+      viewBottom = getResources().getDisplayMetrics().heightPixels;
+    }
+    int paddingTop = getPaddingTop();
+    int first = mEngine.getLineStart(mEngine.getLineAt(viewTop - paddingTop));
+    int last = mEngine.getLineEnd(mEngine.getLineAt(viewBottom - paddingTop));
+
+    // recycle the children which left the viewport
+    int childCount = getChildCount();
+    int keepStart = Math.max(first - mFirstPosition, 0);
+    int keepEnd = Math.min(last - mFirstPosition, childCount);
+    if (keepStart >= keepEnd) {
+      recycleChildren(0, childCount);
+      mFirstPosition = first;
+    } else {
+      recycleChildren(keepEnd, childCount);
+      recycleChildren(0, keepStart);
+      mFirstPosition += keepStart;
+    }
+
+    // bind the positions which entered it
+    boolean sizeChanged = false;
+    while (mFirstPosition > first) {
+      mFirstPosition--;
+      sizeChanged |= addItemView(mFirstPosition, 0);
+    }
+    while (mFirstPosition + getChildCount() < last) {
+      int position = mFirstPosition + getChildCount();
+      sizeChanged |= addItemView(position, getChildCount());
+    }
+    return sizeChanged;
+  }
+
+  /**
+   * @return true if the measured size of the item differs from the size used to break the lines
+   */
+  private boolean addItemView(int position, int index) {
+    int viewType = mAdapter.getItemViewType(position);
+    View convertView = getRecycledViewPool().getRecycledView(viewType);
+    View child = mAdapter.getView(this, convertView, position);
+    if (convertView != null && child != convertView) {
+      getRecycledViewPool().putRecycledView(viewType, convertView);
+    }
+    FlowLayout.LayoutParams params = obtainLayoutParams(child);
+    params.mViewType = viewType;
+    addViewInLayout(child, index, params, true);
+    return measureItem(position, child);
+  }
+
+  private FlowLayout.LayoutParams obtainLayoutParams(View child) {
+    ViewGroup.LayoutParams p = child.getLayoutParams();
+    if (p == null) {
+      return (FlowLayout.LayoutParams) generateDefaultLayoutParams();
+    } else if (!checkLayoutParams(p)) {
+      return (FlowLayout.LayoutParams) generateLayoutParams(p);
+    }
+    return (FlowLayout.LayoutParams) p;
+  }
+
+  private boolean measureItem(int position, View child) {
+    MarginLayoutParams params = (MarginLayoutParams) child.getLayoutParams();
+    int widthSpec = getChildMeasureSpec(
+        MeasureSpec.makeMeasureSpec(mUsefulWidth, MeasureSpec.EXACTLY),
+        params.leftMargin + params.rightMargin, params.width);
+    int heightSpec = getChildMeasureSpec(
+        MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED),
+        params.topMargin + params.bottomMargin, params.height);
+    child.measure(widthSpec, heightSpec);
+
+    int width = child.getMeasuredWidth() + params.leftMargin + params.rightMargin;
+    int height = child.getMeasuredHeight() + params.topMargin + params.bottomMargin;
+    if (mItemMeasured[position]) {
+      if (mItemWidth[position] == width && mItemHeight[position] == height) {
+        return false;
+      }
+      mMeasuredWidthSum -= mItemWidth[position];
+      mMeasuredHeightSum -= mItemHeight[position];
+      mMeasuredCount--;
+    }
+    boolean changed = mItemWidth[position] != width || mItemHeight[position] != height;
+    mItemWidth[position] = width;
+    mItemHeight[position] = height;
+    mItemMeasured[position] = true;
+    mMeasuredWidthSum += width;
+    mMeasuredHeightSum += height;
+    mMeasuredCount++;
+    return changed;
+  }
+
+  private void recycleChildren(int start, int end) {
+    for (int i = end - 1; i >= start; i--) {
+      View child = getChildAt(i);
+      removeViewInLayout(child);
+      int viewType = ((FlowLayout.LayoutParams) child.getLayoutParams()).mViewType;
+      if (viewType != FlowLayout.LayoutParams.INVALID_VIEW_TYPE) {
+        getRecycledViewPool().putRecycledView(viewType, child);
+      }
+    }
+  }
+
+  private void layoutChildren() {
+    int paddingLeft = getPaddingLeft();
+    int paddingTop = getPaddingTop();
+    int childCount = getChildCount();
+    for (int i = 0; i < childCount; i++) {
+      View child = getChildAt(i);
+      int position = mFirstPosition + i;
+      MarginLayoutParams params = (MarginLayoutParams) child.getLayoutParams();
+      int ll = paddingLeft + mEngine.getSlotLeft(position) + params.leftMargin;
+      int tt = paddingTop + mEngine.getSlotTop(position) + params.topMargin;
+      child.layout(ll, tt, ll + child.getMeasuredWidth(), tt + child.getMeasuredHeight());
+    }
+  }
+
+  private void computeLines() {
+    int estimatedWidth;
+    int estimatedHeight;
+    if (mMeasuredCount > 0) {
+      estimatedWidth = (int) (mMeasuredWidthSum / mMeasuredCount);
+      estimatedHeight = (int) (mMeasuredHeightSum / mMeasuredCount);
+    } else {
+      estimatedWidth = 0;
+      estimatedHeight = 0;
+    }
+    for (int i = 0; i < mItemCount; i++) {
+      if (!mItemMeasured[i]) {
+        mItemWidth[i] = estimatedWidth;
+        mItemHeight[i] = estimatedHeight;
+      }
+    }
+    mEngine.setWidth(mUsefulWidth);
+    mEngine.setGravity(mGravity);
+    mEngine.setLinePadding(mLinePadding);
+    mEngine.compute(mItemWidth, mItemHeight, mItemCount);
+  }
+
+  private void ensureItemSizes() {
+    int count = mAdapter.getCount();
+    ensureCapacity(count);
+    mItemCount = count;
+    if (mMeasuredCount == 0 && count > 0) {
+      // seed the estimate with the first item
+      addItemView(0, getChildCount());
+      recycleChildren(getChildCount() - 1, getChildCount());
+    }
+  }
+
+  private void resetItemSizes() {
+    for (int i = 0; i < mItemMeasured.length; i++) {
+      mItemMeasured[i] = false;
+    }
+    mMeasuredWidthSum = 0;
+    mMeasuredHeightSum = 0;
+    mMeasuredCount = 0;
+    mItemCount = 0;
+    mEngine.compute(mItemWidth, mItemHeight, 0);
+  }
+
+  /**
+   * forget the measured size of [start, end)
+   */
+  private void invalidateItemSizes(int start, int end) {
+    for (int i = start; i < end && i < mItemCount; i++) {
+      if (mItemMeasured[i]) {
+        mItemMeasured[i] = false;
+        mMeasuredWidthSum -= mItemWidth[i];
+        mMeasuredHeightSum -= mItemHeight[i];
+        mMeasuredCount--;
+      }
+    }
+  }
+
+  /**
+   * shift the cached sizes of every position from {@code from} on by {@code delta}
+   */
+  private void shiftItemSizes(int from, int delta) {
+    if (delta > 0) {
+      ensureCapacity(mItemCount + delta);
+      int moved = mItemCount - from;
+      System.arraycopy(mItemWidth, from, mItemWidth, from + delta, moved);
+      System.arraycopy(mItemHeight, from, mItemHeight, from + delta, moved);
+      System.arraycopy(mItemMeasured, from, mItemMeasured, from + delta, moved);
+      for (int i = from; i < from + delta; i++) {
+        mItemMeasured[i] = false;
+      }
+    } else {
+      invalidateItemSizes(from + delta, from);
+      int moved = mItemCount - from;
+      System.arraycopy(mItemWidth, from, mItemWidth, from + delta, moved);
+      System.arraycopy(mItemHeight, from, mItemHeight, from + delta, moved);
+      System.arraycopy(mItemMeasured, from, mItemMeasured, from + delta, moved);
+    }
+    mItemCount += delta;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (mItemWidth.length < capacity) {
+      mItemWidth = LineTable.grow(mItemWidth, capacity);
+      mItemHeight = LineTable.grow(mItemHeight, capacity);
+      boolean[] measured = new boolean[mItemWidth.length];
+      System.arraycopy(mItemMeasured, 0, measured, 0, mItemMeasured.length);
+      mItemMeasured = measured;
+    }
+  }
+
+  private class AdapterDataSetObserver extends FlowLayoutAdapter.AdapterDataObserver {
+    @Override
+    public void onChanged() {
+      recycleChildren(0, getChildCount());
+      resetItemSizes();
+      requestLayout();
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+      invalidateItemSizes(positionStart, positionStart + itemCount);
+      int start = Math.max(positionStart - mFirstPosition, 0);
+      int end = Math.min(positionStart + itemCount - mFirstPosition, getChildCount());
+      for (int i = start; i < end; i++) {
+        // rebind in place, the children stay consecutive
+        recycleChildren(i, i + 1);
+        addItemView(mFirstPosition + i, i);
+      }
+      requestLayout();
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+      shiftItemSizes(positionStart, itemCount);
+      recycleChildren(0, getChildCount());
+      requestLayout();
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+      shiftItemSizes(positionStart + itemCount, -itemCount);
+      recycleChildren(0, getChildCount());
+      requestLayout();
+    }
+
+    @Override
+    public void onItemMoved(int fromPosition, int toPosition) {
+      invalidateItemSizes(Math.min(fromPosition, toPosition),
+          Math.max(fromPosition, toPosition) + 1);
+      recycleChildren(0, getChildCount());
+      requestLayout();
+    }
+  }
+
+  @Override
+  protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+    return p instanceof FlowLayout.LayoutParams;
+  }
+
+  @Override
+  protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+    if (p instanceof MarginLayoutParams) {
+      return new FlowLayout.LayoutParams((MarginLayoutParams) p);
+    }
+    return new FlowLayout.LayoutParams(p);
+  }
+
+  @Override
+  public ViewGroup.LayoutParams generateLayoutParams(AttributeSet attrs) {
+    return new FlowLayout.LayoutParams(getContext(), attrs);
+  }
+
+  @Override
+  protected ViewGroup.LayoutParams generateDefaultLayoutParams() {
+    return new FlowLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+  }
+}
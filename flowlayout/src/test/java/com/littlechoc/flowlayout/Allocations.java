@@ -0,0 +1,41 @@
+package com.littlechoc.flowlayout;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Allocations
+ * <p/>
+ * measures what the current thread allocates, tests using it are skipped on VMs which cannot tell
+ */
+final class Allocations {
+
+  private Allocations() {
+  }
+
+  /**
+   * @return the bytes allocated by {@code times} runs of {@code pass}, measured after as many runs
+   * as {@code warmUps} to grow the arrays it reuses and let the JIT settle
+   */
+  static long ofSteadyState(Runnable pass, int warmUps, int times) {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+
+    for (int i = 0; i < warmUps; i++) {
+      pass.run();
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long overhead = threadBean.getThreadAllocatedBytes(threadId);
+    overhead = threadBean.getThreadAllocatedBytes(threadId) - overhead;
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < times; i++) {
+      pass.run();
+    }
+    return threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+  }
+}
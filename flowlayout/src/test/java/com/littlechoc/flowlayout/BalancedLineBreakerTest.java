@@ -0,0 +1,112 @@
+package com.littlechoc.flowlayout;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * BalancedLineBreakerTest
+ */
+public class BalancedLineBreakerTest {
+
+  private static final int WIDTH = 100;
+
+  @Test
+  public void sparseLastButOneLine_isEvenedOut() {
+    int[] widths = {30, 30, 30, 30};
+    int[] heights = {10, 20, 10, 10};
+    LineTable lines = new LineTable();
+
+    new BalancedLineBreaker().breakLines(widths, heights, widths.length, WIDTH, 0, lines);
+
+    // greedy would leave a single item on the last line
+    assertEquals(2, lines.count);
+    assertEquals(4, lines.end[1]);
+    assertEquals(2, lines.end[0]);
+    assertEquals(60, lines.width[0]);
+    assertEquals(20, lines.height[0]);
+  }
+
+  @Test
+  public void moreLinesThanMaxLines_fallBackOnGreedy() {
+    int[] widths = {60, 30, 30, 40, 50};
+    int[] heights = {10, 10, 10, 10, 10};
+    LineTable balanced = new LineTable();
+    LineTable greedy = new LineTable();
+
+    new BalancedLineBreaker().breakLines(widths, heights, widths.length, WIDTH, 2, balanced);
+    greedy.breakLines(widths, heights, widths.length, WIDTH, 2);
+
+    assertEquals(greedy.count, balanced.count);
+    assertEquals(greedy.itemCount(), balanced.itemCount());
+  }
+
+  @Test
+  public void randomItems_haveTheMinimumRaggedness() {
+    Random random = new Random(5);
+    BalancedLineBreaker breaker = new BalancedLineBreaker();
+    LineTable lines = new LineTable();
+    for (int round = 0; round < 2000; round++) {
+      int size = 1 + random.nextInt(11);
+      int[] widths = new int[size];
+      int[] heights = new int[size];
+      for (int i = 0; i < size; i++) {
+        // a few items wider than a line
+        widths[i] = random.nextInt(10) == 0 ? WIDTH + 10 : 5 + random.nextInt(60);
+        heights[i] = 10;
+      }
+
+      breaker.breakLines(widths, heights, size, WIDTH, 0, lines);
+
+      assertEquals(0, lines.start[0]);
+      for (int line = 1; line < lines.count; line++) {
+        assertEquals(lines.end[line - 1], lines.start[line]);
+      }
+      assertEquals(size, lines.itemCount());
+      assertEquals(bruteForce(widths, size), raggedness(lines));
+    }
+  }
+
+  /**
+   * @return the minimum raggedness over every way to break the items
+   */
+  private static long bruteForce(int[] widths, int size) {
+    long best = Long.MAX_VALUE;
+    for (int breaks = 0; breaks < 1 << (size - 1); breaks++) {
+      long cost = 0;
+      int start = 0;
+      for (int end = 1; end <= size && cost != Long.MAX_VALUE; end++) {
+        if (end < size && (breaks & (1 << (end - 1))) == 0) {
+          continue;
+        }
+        int width = 0;
+        for (int i = start; i < end; i++) {
+          width += widths[i];
+        }
+        if (width > WIDTH && end - start > 1) {
+          cost = Long.MAX_VALUE;
+        } else if (width <= WIDTH) {
+          cost += (long) (WIDTH - width) * (WIDTH - width);
+        }
+        start = end;
+      }
+      best = Math.min(best, cost);
+    }
+    return best;
+  }
+
+  private static long raggedness(LineTable lines) {
+    long cost = 0;
+    for (int line = 0; line < lines.count; line++) {
+      int free = WIDTH - lines.width[line];
+      if (free >= 0) {
+        cost += (long) free * free;
+      } else {
+        assertEquals(1, lines.end[line] - lines.start[line]);
+      }
+    }
+    return cost;
+  }
+}
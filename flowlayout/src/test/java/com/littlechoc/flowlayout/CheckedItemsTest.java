@@ -0,0 +1,107 @@
+package com.littlechoc.flowlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CheckedItemsTest
+ */
+public class CheckedItemsTest {
+
+  @Test
+  public void insertAndRemove_shiftTheCheckedPositions() {
+    CheckedItems items = new CheckedItems();
+    items.set(1, true, 11);
+    items.set(4, true, 14);
+
+    items.insert(2, 3);
+    assertTrue(items.isChecked(1));
+    assertTrue(items.isChecked(7));
+    assertEquals(2, items.count());
+
+    items.remove(0, 2);
+    assertEquals(5, items.next(0));
+    assertEquals(1, items.count());
+    assertArrayEquals(new long[]{14}, items.ids());
+  }
+
+  @Test
+  public void move_carriesTheCheckedState() {
+    CheckedItems items = new CheckedItems();
+    items.set(0, true, 10);
+
+    items.move(0, 3);
+
+    assertFalse(items.isChecked(0));
+    assertTrue(items.isChecked(3));
+    assertEquals(1, items.count());
+    assertArrayEquals(new long[]{10}, items.ids());
+  }
+
+  @Test
+  public void refresh_findsStableIdsAtTheirNewPositions() {
+    CheckedItems items = new CheckedItems();
+    items.set(0, true, 10);
+    items.set(2, true, 12);
+
+    items.refresh(3, new CheckedItems.IdSource() {
+      @Override
+      public long getItemId(int position) {
+        return 12 - position;
+      }
+    });
+
+    assertTrue(items.isChecked(0));
+    assertTrue(items.isChecked(2));
+    assertFalse(items.isChecked(1));
+
+    items.refresh(2, new CheckedItems.IdSource() {
+      @Override
+      public long getItemId(int position) {
+        return 20 + position;
+      }
+    });
+    assertEquals(0, items.count());
+  }
+
+  @Test
+  public void setAll_checksEveryPositionWithItsId() {
+    CheckedItems items = new CheckedItems();
+    items.set(2, true, 12);
+
+    items.setAll(4, new CheckedItems.IdSource() {
+      @Override
+      public long getItemId(int position) {
+        return 10 + position;
+      }
+    });
+
+    assertEquals(4, items.count());
+    assertEquals(-1, items.next(4));
+    assertEquals(4, items.ids().length);
+
+    items.remove(0, 1);
+    assertEquals(3, items.count());
+    assertEquals(3, items.ids().length);
+
+    items.setAll(5, null);
+    assertEquals(5, items.count());
+  }
+
+  @Test
+  public void refreshWithoutIds_dropsPositionsPastTheEnd() {
+    CheckedItems items = new CheckedItems();
+    items.set(1, true, FlowLayoutAdapter.NO_ID);
+    items.set(5, true, FlowLayoutAdapter.NO_ID);
+
+    items.refresh(3, null);
+
+    assertEquals(1, items.count());
+    assertEquals(1, items.next(0));
+    assertEquals(-1, items.next(2));
+  }
+}
@@ -0,0 +1,315 @@
+package com.littlechoc.flowlayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * FlowLayoutEngineTest
+ */
+public class FlowLayoutEngineTest {
+
+  private static final int[] WIDTHS = {40, 30, 50, 20, 60};
+  private static final int[] HEIGHTS = {10, 20, 10, 10, 15};
+
+  private FlowLayoutEngine mEngine;
+
+  @Before
+  public void setUp() {
+    mEngine = new FlowLayoutEngine();
+    mEngine.setWidth(100);
+    mEngine.setLinePadding(5);
+  }
+
+  @Test
+  public void start_placesLinesLeftAligned() {
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+
+    assertEquals(3, mEngine.getLineCount());
+    assertEquals(20 + 5 + 10 + 5 + 15, mEngine.getContentHeight());
+    assertSlot(0, 0, 0);
+    assertSlot(1, 40, 0);
+    assertSlot(2, 0, 25);
+    assertSlot(3, 50, 25);
+    assertSlot(4, 0, 40);
+  }
+
+  @Test
+  public void center_sharesFreeSpaceOnBothSides() {
+    mEngine.setGravity(FlowLayoutEngine.CENTER);
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+
+    assertSlot(0, 15, 0);
+    assertSlot(2, 15, 25);
+    assertSlot(4, 20, 40);
+  }
+
+  @Test
+  public void end_placesLinesRightAligned() {
+    mEngine.setGravity(FlowLayoutEngine.END);
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+
+    assertSlot(1, 70, 0);
+    assertSlot(3, 80, 25);
+    assertSlot(4, 40, 40);
+  }
+
+  @Test
+  public void align_justifiesEveryLine() {
+    mEngine.setGravity(FlowLayoutEngine.ALIGN);
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+
+    assertSlot(1, 70, 0);
+    assertSlot(3, 80, 25);
+    assertSlot(4, 0, 40);
+  }
+
+  @Test
+  public void alignLines_keepsGravityOfLastLine() {
+    mEngine.setGravity(FlowLayoutEngine.END);
+    mEngine.setAlignLines(true);
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+
+    assertSlot(0, 0, 0);
+    assertSlot(1, 70, 0);
+    assertSlot(4, 40, 40);
+  }
+
+  @Test
+  public void maxLines_dropsTheRest() {
+    mEngine.setMaxLines(2);
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+
+    assertEquals(2, mEngine.getLineCount());
+    assertEquals(4, mEngine.getShownCount());
+    assertEquals(20 + 5 + 10, mEngine.getContentHeight());
+    assertEquals(-1, mEngine.getLineOfSlot(4));
+  }
+
+  @Test
+  public void packing_reordersSlots() {
+    mEngine.setPackingStrategy(PackingStrategy.FIRST_FIT_DECREASING);
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+
+    assertEquals(2, mEngine.getLineCount());
+    int total = 0;
+    for (int slot = 0; slot < WIDTHS.length; slot++) {
+      total += mEngine.getItem(slot);
+      assertEquals(slot, mEngine.getSlotOfItem(mEngine.getItem(slot)));
+    }
+    assertEquals(0 + 1 + 2 + 3 + 4, total);
+  }
+
+  @Test
+  public void lineQueries_useBinarySearch() {
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+
+    assertEquals(0, mEngine.getLineAt(-10));
+    assertEquals(0, mEngine.getLineAt(24));
+    assertEquals(1, mEngine.getLineAt(25));
+    assertEquals(2, mEngine.getLineAt(1000));
+    assertEquals(1, mEngine.getLineOfSlot(3));
+  }
+
+  @Test
+  public void slotAt_findsTheOuterBoxUnderAPoint() {
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+
+    assertEquals(1, mEngine.getSlotAt(45, 15));
+    assertEquals(3, mEngine.getSlotAt(55, 30));
+    assertEquals(4, mEngine.getSlotAt(0, 40));
+    // below a shorter item, past the end of a line, between lines, above the first one
+    assertEquals(-1, mEngine.getSlotAt(5, 15));
+    assertEquals(-1, mEngine.getSlotAt(75, 5));
+    assertEquals(-1, mEngine.getSlotAt(10, 22));
+    assertEquals(-1, mEngine.getSlotAt(10, -1));
+  }
+
+  @Test
+  public void changedItem_breaksLinesAgainLikeAFullPass() {
+    Random random = new Random(42);
+    int[] widths = new int[60];
+    int[] heights = new int[60];
+    for (int i = 0; i < widths.length; i++) {
+      widths[i] = 10 + random.nextInt(50);
+      heights[i] = 10 + random.nextInt(3) * 5;
+    }
+    mEngine.setGravity(FlowLayoutEngine.CENTER);
+    mEngine.setAlignLines(true);
+    for (int maxLines : new int[]{FlowLayoutEngine.UNLIMITED_LINES, 6}) {
+      mEngine.setMaxLines(maxLines);
+      int count = widths.length;
+      mEngine.compute(widths, heights, count);
+      for (int round = 0; round < 200; round++) {
+        int item = random.nextInt(count);
+        switch (random.nextInt(3)) {
+          case 0:
+            widths[item] = 10 + random.nextInt(50);
+            break;
+          case 1:
+            heights[item] = 10 + random.nextInt(3) * 5;
+            break;
+          default:
+            count = 40 + random.nextInt(widths.length - 40 + 1);
+            break;
+        }
+        mEngine.compute(widths, heights, count);
+
+        FlowLayoutEngine full = new FlowLayoutEngine();
+        full.setWidth(100);
+        full.setLinePadding(5);
+        full.setGravity(FlowLayoutEngine.CENTER);
+        full.setAlignLines(true);
+        full.setMaxLines(maxLines);
+        full.compute(Arrays.copyOf(widths, count), Arrays.copyOf(heights, count), count);
+        assertSameLayout(full, mEngine);
+      }
+    }
+  }
+
+  @Test
+  public void computedLineCount_leavesOutKeptLines() {
+    int[] widths = Arrays.copyOf(WIDTHS, WIDTHS.length);
+    mEngine.compute(widths, HEIGHTS, widths.length);
+    assertEquals(3, mEngine.getComputedLineCount());
+
+    mEngine.compute(widths, HEIGHTS, widths.length);
+    assertEquals(0, mEngine.getComputedLineCount());
+
+    widths[4] = 70;
+    mEngine.compute(widths, HEIGHTS, widths.length);
+    assertEquals(2, mEngine.getComputedLineCount());
+  }
+
+  @Test
+  public void restoredLines_areKeptByTheNextPass() {
+    mEngine.setGravity(FlowLayoutEngine.CENTER);
+    mEngine.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+    int[] lineEnds = new int[mEngine.getLineCount()];
+    for (int line = 0; line < lineEnds.length; line++) {
+      lineEnds[line] = mEngine.getLineEnd(line);
+    }
+
+    FlowLayoutEngine restored = new FlowLayoutEngine();
+    restored.setWidth(100);
+    restored.setLinePadding(5);
+    restored.setGravity(FlowLayoutEngine.CENTER);
+    restored.restore(WIDTHS, HEIGHTS, WIDTHS.length, lineEnds, lineEnds.length);
+    assertSameLayout(mEngine, restored);
+
+    restored.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+    assertEquals(0, restored.getComputedLineCount());
+    assertSameLayout(mEngine, restored);
+
+    int[] widths = Arrays.copyOf(WIDTHS, WIDTHS.length);
+    widths[4] = 70;
+    restored.compute(widths, HEIGHTS, widths.length);
+    mEngine.compute(widths, HEIGHTS, widths.length);
+    assertSameLayout(mEngine, restored);
+  }
+
+  @Test
+  public void uniformItems_areCountedLikeTheyAreBroken() {
+    for (int gravity = FlowLayoutEngine.START; gravity <= FlowLayoutEngine.ALIGN; gravity++) {
+      for (int maxLines : new int[]{FlowLayoutEngine.UNLIMITED_LINES, 2}) {
+        for (int itemWidth : new int[]{0, 7, 30, 100, 140}) {
+          for (int count : new int[]{1, 3, 10, 31}) {
+            int[] widths = new int[count];
+            int[] heights = new int[count];
+            Arrays.fill(widths, itemWidth);
+            Arrays.fill(heights, 12);
+            FlowLayoutEngine broken = new FlowLayoutEngine();
+            FlowLayoutEngine counted = new FlowLayoutEngine();
+            for (FlowLayoutEngine engine : new FlowLayoutEngine[]{broken, counted}) {
+              engine.setWidth(100);
+              engine.setLinePadding(5);
+              engine.setGravity(gravity);
+              engine.setMaxLines(maxLines);
+              engine.setAlignLines(gravity == FlowLayoutEngine.CENTER);
+            }
+
+            broken.compute(widths, heights, count);
+            counted.computeUniform(itemWidth, 12, count);
+
+            assertSameLayout(broken, counted);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void steadyStatePasses_allocateNothing() {
+    final int count = 300;
+    final int[] widths = new int[count];
+    final int[] heights = new int[count];
+    for (int i = 0; i < count; i++) {
+      widths[i] = 40 + (i * 37) % 120;
+      heights[i] = 30 + i % 3;
+    }
+    PackingStrategy[] strategies = {
+        null,
+        PackingStrategy.FIRST_FIT_DECREASING,
+        PackingStrategy.BEST_FIT_DECREASING
+    };
+    for (int gravity = FlowLayoutEngine.START; gravity <= FlowLayoutEngine.ALIGN; gravity++) {
+      for (boolean alignLines : new boolean[]{false, true}) {
+        for (PackingStrategy strategy : strategies) {
+          for (int breakStrategy : new int[]{FlowLayoutEngine.BREAK_STRATEGY_SIMPLE,
+              FlowLayoutEngine.BREAK_STRATEGY_BALANCED}) {
+            final FlowLayoutEngine engine = new FlowLayoutEngine();
+            engine.setWidth(1080);
+            engine.setLinePadding(8);
+            engine.setGravity(gravity);
+            engine.setAlignLines(alignLines);
+            engine.setPackingStrategy(strategy);
+            engine.setBreakStrategy(breakStrategy);
+            Runnable pass = new Runnable() {
+              @Override
+              public void run() {
+                // an item changes, then every line is broken again, and the slots are read
+                // back like onLayout does
+                widths[count / 2] ^= 64;
+                engine.compute(widths, heights, count);
+                engine.invalidate();
+                engine.compute(widths, heights, count);
+                int sum = engine.getContentHeight();
+                for (int slot = 0; slot < engine.getShownCount(); slot++) {
+                  sum += engine.getSlotLeft(slot) + engine.getSlotTop(slot) + engine.getItem(slot);
+                }
+                if (sum < 0) {
+                  throw new AssertionError();
+                }
+              }
+            };
+
+            assertEquals(0, Allocations.ofSteadyState(pass, 2000, 200));
+          }
+        }
+      }
+    }
+  }
+
+  private static void assertSameLayout(FlowLayoutEngine expected, FlowLayoutEngine actual) {
+    assertEquals(expected.getLineCount(), actual.getLineCount());
+    assertEquals(expected.getShownCount(), actual.getShownCount());
+    assertEquals(expected.getContentHeight(), actual.getContentHeight());
+    for (int line = 0; line < expected.getLineCount(); line++) {
+      assertEquals(expected.getLineEnd(line), actual.getLineEnd(line));
+      assertEquals(expected.getLineTop(line), actual.getLineTop(line));
+    }
+    for (int slot = 0; slot < expected.getShownCount(); slot++) {
+      assertEquals(expected.getSlotLeft(slot), actual.getSlotLeft(slot));
+      assertEquals(expected.getSlotTop(slot), actual.getSlotTop(slot));
+    }
+  }
+
+  private void assertSlot(int slot, int left, int top) {
+    assertEquals(left, mEngine.getSlotLeft(slot));
+    assertEquals(top, mEngine.getSlotTop(slot));
+  }
+}
@@ -0,0 +1,74 @@
+package com.littlechoc.flowlayout;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FlowLayoutPlanTest
+ */
+public class FlowLayoutPlanTest {
+
+  private static final int[] WIDTHS = {40, 30, 50, 20, 60};
+  private static final int[] HEIGHTS = {10, 20, 10, 10, 15};
+
+  @Test
+  public void appliedPlan_isTheLayoutOfAPass() throws InterruptedException {
+    final FlowLayoutPlan[] plan = new FlowLayoutPlan[1];
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        plan[0] = FlowLayoutPlan.compute(newEngine(), WIDTHS, HEIGHTS, WIDTHS.length);
+      }
+    });
+    thread.start();
+    thread.join();
+
+    FlowLayoutEngine expected = newEngine();
+    expected.compute(WIDTHS, HEIGHTS, WIDTHS.length);
+    FlowLayoutEngine applied = newEngine();
+    assertTrue(plan[0].matches(applied, WIDTHS, HEIGHTS, WIDTHS.length));
+    plan[0].applyTo(applied);
+
+    assertEquals(expected.getContentHeight(), plan[0].getContentHeight());
+    assertEquals(expected.getLineCount(), applied.getLineCount());
+    assertEquals(expected.getContentHeight(), applied.getContentHeight());
+    for (int slot = 0; slot < WIDTHS.length; slot++) {
+      assertEquals(expected.getSlotLeft(slot), applied.getSlotLeft(slot));
+      assertEquals(expected.getSlotTop(slot), applied.getSlotTop(slot));
+    }
+  }
+
+  @Test
+  public void otherSizesOrSettings_doNotMatch() {
+    FlowLayoutPlan plan = FlowLayoutPlan.compute(newEngine(), WIDTHS, HEIGHTS, WIDTHS.length);
+
+    int[] widths = Arrays.copyOf(WIDTHS, WIDTHS.length);
+    widths[2]++;
+    assertFalse(plan.matches(newEngine(), widths, HEIGHTS, widths.length));
+    assertFalse(plan.matches(newEngine(), WIDTHS, HEIGHTS, WIDTHS.length - 1));
+
+    FlowLayoutEngine engine = newEngine();
+    engine.setMaxLines(1);
+    assertFalse(plan.matches(engine, WIDTHS, HEIGHTS, WIDTHS.length));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void packedEngine_hasNoPlan() {
+    FlowLayoutEngine engine = newEngine();
+    engine.setPackingStrategy(PackingStrategy.FIRST_FIT_DECREASING);
+    FlowLayoutPlan.compute(engine, WIDTHS, HEIGHTS, WIDTHS.length);
+  }
+
+  private static FlowLayoutEngine newEngine() {
+    FlowLayoutEngine engine = new FlowLayoutEngine();
+    engine.setWidth(100);
+    engine.setLinePadding(5);
+    engine.setGravity(FlowLayoutEngine.END);
+    return engine;
+  }
+}
@@ -0,0 +1,77 @@
+package com.littlechoc.flowlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * LineTableTest
+ */
+public class LineTableTest {
+
+  @Test
+  public void breakLines_wrapsWhenLineIsFull() {
+    LineTable table = new LineTable();
+    int[] widths = {40, 40, 40, 70, 10};
+    int[] heights = {10, 20, 10, 30, 10};
+    table.breakLines(widths, heights, widths.length, 100, 0);
+
+    assertEquals(3, table.count);
+    assertLine(table, 0, 0, 2, 80, 20);
+    assertLine(table, 1, 2, 3, 40, 10);
+    assertLine(table, 2, 3, 5, 80, 30);
+  }
+
+  @Test
+  public void breakLines_oversizedItemGetsItsOwnLine() {
+    LineTable table = new LineTable();
+    int[] widths = {150, 20};
+    int[] heights = {10, 10};
+    table.breakLines(widths, heights, widths.length, 100, 0);
+
+    assertEquals(2, table.count);
+    assertLine(table, 0, 0, 1, 150, 10);
+    assertLine(table, 1, 1, 2, 20, 10);
+  }
+
+  @Test
+  public void breakLines_stopsAtMaxLines() {
+    LineTable table = new LineTable();
+    int[] widths = {60, 60, 60, 60};
+    int[] heights = {10, 10, 10, 10};
+    table.breakLines(widths, heights, widths.length, 100, 2);
+
+    assertEquals(2, table.count);
+    assertEquals(2, table.itemCount());
+    assertEquals(25, table.contentHeight(5));
+  }
+
+  @Test
+  public void breakLines_steadyStateAllocatesNothing() {
+    final int size = 300;
+    final int[] widths = new int[size];
+    final int[] heights = new int[size];
+    for (int i = 0; i < size; i++) {
+      widths[i] = 40 + (i * 37) % 120;
+      heights[i] = 30 + i % 3;
+    }
+    final LineTable table = new LineTable();
+    Runnable pass = new Runnable() {
+      @Override
+      public void run() {
+        table.breakLines(widths, heights, size, 1080, 0);
+        table.contentHeight(8);
+      }
+    };
+
+    assertEquals(0, Allocations.ofSteadyState(pass, 10000, 1000));
+  }
+
+  private static void assertLine(LineTable table, int line, int start, int end, int width,
+                                 int height) {
+    assertEquals(start, table.start[line]);
+    assertEquals(end, table.end[line]);
+    assertEquals(width, table.width[line]);
+    assertEquals(height, table.height[line]);
+  }
+}
@@ -0,0 +1,262 @@
+package com.littlechoc.flowlayout;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ListDiffTest
+ */
+public class ListDiffTest {
+
+  /**
+   * items are "id:content"
+   */
+  private static final ListFlowLayoutAdapter.ItemCallback<String> CALLBACK =
+      new ListFlowLayoutAdapter.ItemCallback<String>() {
+        @Override
+        public boolean areItemsTheSame(String oldItem, String newItem) {
+          return id(oldItem).equals(id(newItem));
+        }
+
+        @Override
+        public boolean areContentsTheSame(String oldItem, String newItem) {
+          return oldItem.equals(newItem);
+        }
+      };
+
+  @Test
+  public void insertInTheMiddle_isASingleUpdate() {
+    List<String> oldList = Arrays.asList("a:", "b:", "c:");
+    List<String> newList = Arrays.asList("a:", "x:", "b:", "c:");
+
+    ListDiff diff = ListDiff.diff(oldList, newList, CALLBACK);
+
+    assertEquals(1, diff.getUpdateCount());
+    assertEquals(newList, apply(oldList, newList, diff));
+  }
+
+  @Test
+  public void movedItem_isMovedNotRebuilt() {
+    List<String> oldList = Arrays.asList("a:", "b:", "c:", "d:");
+    List<String> newList = Arrays.asList("d:", "a:", "b:", "c:");
+
+    ListDiff diff = ListDiff.diff(oldList, newList, CALLBACK);
+
+    Recorder recorder = new Recorder(oldList, newList);
+    diff.dispatchTo(recorder);
+    assertEquals(1, recorder.mMoves);
+    assertEquals(0, recorder.mInserts + recorder.mRemoves);
+  }
+
+  @Test
+  public void randomLists_turnIntoTheNewList() {
+    Random random = new Random(7);
+    for (int round = 0; round < 300; round++) {
+      List<String> oldList = randomList(random);
+      List<String> newList = randomList(random);
+
+      ListDiff diff = ListDiff.diff(oldList, newList, CALLBACK);
+
+      assertEquals(newList, apply(oldList, newList, diff));
+    }
+  }
+
+  @Test
+  public void replacedList_pairsMovesWithinABudget() {
+    List<String> oldList = new ArrayList<>();
+    List<String> newList = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      oldList.add(i + ":");
+      newList.add((i + 1000) + ":");
+    }
+
+    int moveChecks = moveChecks(oldList, newList, new CountingCallback(false));
+
+    assertTrue(moveChecks <= ListDiff.MOVE_CHECKS_PER_ITEM * (oldList.size() + newList.size()));
+  }
+
+  @Test
+  public void shuffledListWithIds_isPairedThroughTheIds() {
+    List<String> oldList = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      oldList.add(i + ":");
+    }
+    List<String> newList = new ArrayList<>(oldList);
+    Collections.shuffle(newList, new Random(3));
+    CountingCallback callback = new CountingCallback(true);
+
+    int moveChecks = moveChecks(oldList, newList, callback);
+    ListDiff diff = ListDiff.diff(oldList, newList, callback);
+
+    // one check per moved item
+    assertTrue(moveChecks <= newList.size());
+    Recorder recorder = new Recorder(oldList, newList);
+    diff.dispatchTo(recorder);
+    assertEquals(newList, recorder.mList);
+    assertEquals(0, recorder.mInserts + recorder.mRemoves);
+  }
+
+  @Test
+  public void commonSubsequence_isTheLongestOne() {
+    Random random = new Random(11);
+    for (int round = 0; round < 300; round++) {
+      List<String> oldList = randomList(random);
+      List<String> newList = randomList(random);
+      int[] oldToNew = new int[oldList.size()];
+      int[] newToOld = new int[newList.size()];
+      Arrays.fill(oldToNew, -1);
+      Arrays.fill(newToOld, -1);
+
+      ListDiff.commonSubsequence(oldList, newList, CALLBACK, oldToNew, newToOld);
+
+      int matched = 0;
+      int lastNew = -1;
+      for (int i = 0; i < oldList.size(); i++) {
+        if (oldToNew[i] != -1) {
+          assertEquals(i, newToOld[oldToNew[i]]);
+          assertEquals(id(oldList.get(i)), id(newList.get(oldToNew[i])));
+          assertEquals(true, oldToNew[i] > lastNew);
+          lastNew = oldToNew[i];
+          matched++;
+        }
+      }
+      assertEquals(lcs(oldList, newList), matched);
+    }
+  }
+
+  /**
+   * @return the areItemsTheSame calls of a diff spent after the common subsequence
+   */
+  private static int moveChecks(List<String> oldList, List<String> newList,
+                                CountingCallback callback) {
+    int[] oldToNew = new int[oldList.size()];
+    int[] newToOld = new int[newList.size()];
+    Arrays.fill(oldToNew, -1);
+    Arrays.fill(newToOld, -1);
+    callback.mChecks = 0;
+    ListDiff.commonSubsequence(oldList, newList, callback, oldToNew, newToOld);
+    int commonChecks = callback.mChecks;
+    callback.mChecks = 0;
+    ListDiff diff = ListDiff.diff(oldList, newList, callback);
+    assertEquals(newList, apply(oldList, newList, diff));
+    return callback.mChecks - commonChecks;
+  }
+
+  private static int lcs(List<String> a, List<String> b) {
+    int[][] length = new int[a.size() + 1][b.size() + 1];
+    for (int i = 1; i <= a.size(); i++) {
+      for (int j = 1; j <= b.size(); j++) {
+        length[i][j] = id(a.get(i - 1)).equals(id(b.get(j - 1))) ? length[i - 1][j - 1] + 1
+            : Math.max(length[i - 1][j], length[i][j - 1]);
+      }
+    }
+    return length[a.size()][b.size()];
+  }
+
+  private static List<String> randomList(Random random) {
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      ids.add(String.valueOf(i));
+    }
+    List<String> list = new ArrayList<>();
+    int size = random.nextInt(25);
+    for (int i = 0; i < size; i++) {
+      list.add(ids.remove(random.nextInt(ids.size())) + ":" + random.nextInt(2));
+    }
+    return list;
+  }
+
+  private static String id(String item) {
+    return item.substring(0, item.indexOf(':'));
+  }
+
+  private static List<String> apply(List<String> oldList, List<String> newList, ListDiff diff) {
+    Recorder recorder = new Recorder(oldList, newList);
+    diff.dispatchTo(recorder);
+    return recorder.mList;
+  }
+
+  /**
+   * counts the areItemsTheSame calls, with ids parsed from the items or without ids
+   */
+  private static class CountingCallback extends ListFlowLayoutAdapter.ItemCallback<String> {
+
+    final boolean mHasIds;
+    int mChecks;
+
+    CountingCallback(boolean hasIds) {
+      mHasIds = hasIds;
+    }
+
+    @Override
+    public boolean areItemsTheSame(String oldItem, String newItem) {
+      mChecks++;
+      return CALLBACK.areItemsTheSame(oldItem, newItem);
+    }
+
+    @Override
+    public boolean areContentsTheSame(String oldItem, String newItem) {
+      return CALLBACK.areContentsTheSame(oldItem, newItem);
+    }
+
+    @Override
+    public long getItemId(String item) {
+      return mHasIds ? Long.parseLong(id(item)) : FlowLayoutAdapter.NO_ID;
+    }
+  }
+
+  /**
+   * applies the updates the way an adapter already holding the new list is read
+   */
+  private static class Recorder implements ListDiff.UpdateCallback {
+
+    final List<String> mList;
+    final List<String> mNewList;
+    int mInserts;
+    int mRemoves;
+    int mMoves;
+
+    Recorder(List<String> oldList, List<String> newList) {
+      mList = new ArrayList<>(oldList);
+      mNewList = newList;
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+      mInserts++;
+      for (int i = position; i < position + count; i++) {
+        mList.add(i, mNewList.get(i));
+      }
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+      mRemoves++;
+      for (int i = 0; i < count; i++) {
+        mList.remove(position);
+      }
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+      mMoves++;
+      mList.add(toPosition, mList.remove(fromPosition));
+    }
+
+    @Override
+    public void onChanged(int position, int count) {
+      for (int i = position; i < position + count; i++) {
+        assertEquals(id(mNewList.get(i)), id(mList.get(i)));
+        mList.set(i, mNewList.get(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.littlechoc.flowlayout;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PackingStrategyTest
+ */
+public class PackingStrategyTest {
+
+  private static final int[] FIRST_FIT_WORST = {3, 6, 6, 2, 4, 2, 5, 2};
+
+  @Test
+  public void firstFitDecreasing_packsWidestFirst() {
+    int[] widths = {30, 80, 20, 70};
+    int[] order = new int[widths.length];
+    int lines = PackingStrategy.FIRST_FIT_DECREASING.pack(widths, widths.length, 100, order);
+
+    assertEquals(2, lines);
+    assertOrder(new int[]{0, 3, 1, 2}, order);
+  }
+
+  @Test
+  public void bestFitDecreasing_packsValidLines() {
+    int[] widths = {30, 80, 20, 70, 50, 50, 10};
+    int[] order = new int[widths.length];
+    int lines = PackingStrategy.BEST_FIT_DECREASING.pack(widths, widths.length, 100, order);
+
+    assertEquals(lines, countGreedyLines(widths, order, 100));
+    assertEquals(4, lines);
+  }
+
+  @Test
+  public void exact_beatsFirstFit() {
+    int[] order = new int[FIRST_FIT_WORST.length];
+    assertEquals(4, PackingStrategy.FIRST_FIT_DECREASING.pack(
+        FIRST_FIT_WORST, FIRST_FIT_WORST.length, 10, order));
+
+    int lines = PackingStrategy.exact(50000000L).pack(
+        FIRST_FIT_WORST, FIRST_FIT_WORST.length, 10, order);
+    assertEquals(3, lines);
+    assertEquals(3, countGreedyLines(FIRST_FIT_WORST, order, 10));
+  }
+
+  @Test
+  public void exact_outOfBudgetKeepsFirstFit() {
+    int[] order = new int[FIRST_FIT_WORST.length];
+    int lines = PackingStrategy.exact(0).pack(FIRST_FIT_WORST, FIRST_FIT_WORST.length, 10, order);
+    assertTrue(lines == 3 || lines == 4);
+    assertEquals(lines, countGreedyLines(FIRST_FIT_WORST, order, 10));
+  }
+
+  @Test
+  public void pack_oversizedItemsTakeTheirOwnLine() {
+    int[] widths = {150, 20, 120};
+    int[] order = new int[widths.length];
+    int lines = PackingStrategy.FIRST_FIT_DECREASING.pack(widths, widths.length, 100, order);
+
+    assertEquals(3, lines);
+    assertEquals(3, countGreedyLines(widths, order, 100));
+  }
+
+  @Test
+  public void pack_randomInputsStayPermutations() {
+    Random random = new Random(42);
+    PackingStrategy[] strategies = {
+        PackingStrategy.FIRST_FIT_DECREASING,
+        PackingStrategy.BEST_FIT_DECREASING,
+        PackingStrategy.exact(1000000L)
+    };
+    for (int round = 0; round < 50; round++) {
+      int count = 1 + random.nextInt(200);
+      int[] widths = new int[count];
+      long total = 0;
+      for (int i = 0; i < count; i++) {
+        widths[i] = 20 + random.nextInt(300);
+        total += Math.min(widths[i], 1080);
+      }
+      for (PackingStrategy strategy : strategies) {
+        int[] order = new int[count];
+        int lines = strategy.pack(widths, count, 1080, order);
+        boolean[] seen = new boolean[count];
+        for (int i = 0; i < count; i++) {
+          assertTrue(!seen[order[i]]);
+          seen[order[i]] = true;
+        }
+        assertTrue(lines >= (total + 1079) / 1080);
+        assertEquals(lines, countGreedyLines(widths, order, 1080));
+      }
+    }
+  }
+
+  @Test
+  public void sharedScratch_packsLikeAFreshOne() {
+    Random random = new Random(7);
+    PackingStrategy.Scratch scratch = new PackingStrategy.Scratch();
+    PackingStrategy[] strategies = {
+        PackingStrategy.FIRST_FIT_DECREASING,
+        PackingStrategy.BEST_FIT_DECREASING
+    };
+    for (int round = 0; round < 50; round++) {
+      // smaller and larger packs than the previous one
+      int count = 1 + random.nextInt(200);
+      int[] widths = new int[count];
+      for (int i = 0; i < count; i++) {
+        widths[i] = 20 + random.nextInt(300);
+      }
+      for (PackingStrategy strategy : strategies) {
+        int[] expected = new int[count];
+        int[] order = new int[count];
+        int lines = strategy.pack(widths, count, 1080, expected);
+
+        assertEquals(lines, strategy.pack(widths, count, 1080, order, scratch));
+        assertArrayEquals(expected, order);
+      }
+    }
+  }
+
+  @Test
+  public void pack_steadyStateAllocatesNothing() {
+    final int count = 100;
+    final int[] widths = new int[count];
+    for (int i = 0; i < count; i++) {
+      widths[i] = 40 + (i * 37) % 200;
+    }
+    final int[] order = new int[count];
+    PackingStrategy[] strategies = {
+        PackingStrategy.FIRST_FIT_DECREASING,
+        PackingStrategy.BEST_FIT_DECREASING,
+        PackingStrategy.exact(20000L)
+    };
+    for (final PackingStrategy strategy : strategies) {
+      final PackingStrategy.Scratch scratch = new PackingStrategy.Scratch();
+      Runnable pass = new Runnable() {
+        @Override
+        public void run() {
+          strategy.pack(widths, count, 1080, order, scratch);
+        }
+      };
+
+      assertEquals(0, Allocations.ofSteadyState(pass, 2000, 200));
+    }
+  }
+
+  private static int countGreedyLines(int[] widths, int[] order, int capacity) {
+    LineTable table = new LineTable();
+    int[] ordered = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      ordered[i] = widths[order[i]];
+    }
+    table.breakLines(ordered, new int[order.length], order.length, capacity, 0);
+    return table.count;
+  }
+
+  private static void assertOrder(int[] expected, int[] actual) {
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], actual[i]);
+    }
+  }
+}
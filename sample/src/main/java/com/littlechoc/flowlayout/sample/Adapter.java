@@ -33,27 +33,48 @@ public class Adapter extends FlowLayoutAdapter {
 
   @Override
   public View getView(ViewGroup parent, int position) {
-    LayoutInflater inflater = LayoutInflater.from(parent.getContext());
-    View child = inflater.inflate(R.layout.item_tag, parent, false);
+    return getView(parent, null, position);
+  }
+
+  @Override
+  public View getView(ViewGroup parent, View convertView, int position) {
+    View child = convertView;
+    if (child == null) {
+      LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+      child = inflater.inflate(R.layout.item_tag, parent, false);
+    }
     TextView tv = (TextView) child.findViewById(R.id.tag);
     tv.setText(LABELS.get(position));
     return child;
   }
 
+  @Override
+  public View getOverflowView(ViewGroup parent, View convertView, int hiddenCount) {
+    View child = convertView;
+    if (child == null) {
+      LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+      child = inflater.inflate(R.layout.item_tag, parent, false);
+    }
+    TextView tv = (TextView) child.findViewById(R.id.tag);
+    tv.setText("+" + hiddenCount);
+    return child;
+  }
+
   public void add() {
     LABELS.add("标签" + (int) (Math.random() * 100));
-    notifyDataSetChanged();
+    notifyItemInserted(LABELS.size() - 1);
   }
 
   public void delete() {
     if (!LABELS.isEmpty()) {
       LABELS.remove(LABELS.size() - 1);
-      notifyDataSetChanged();
+      notifyItemRemoved(LABELS.size());
     }
   }
 
   public void clear() {
+    int count = LABELS.size();
     LABELS.clear();
-    notifyDataSetChanged();
+    notifyItemRangeRemoved(0, count);
   }
 }